@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.Macaroon;
+import com.github.nitram509.jmacaroons.VerificationPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification of a macaroon with nested discharge macaroons.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DischargeBenchmark {
+
+  @Param({"1", "3", "10"})
+  public int depth;
+
+  private Macaroon macaroon;
+  private Macaroon[] discharges;
+  private VerificationPolicy policy;
+
+  @Setup
+  public void setUp() {
+    Macaroon[] chain = Fixtures.dischargeChain(depth);
+    macaroon = chain[0];
+    discharges = Fixtures.discharges(chain);
+    policy = VerificationPolicy.builder().build();
+    if (!policy.isValid(macaroon, Fixtures.SECRET, discharges)) {
+      throw new IllegalStateException("discharge chain of depth " + depth + " isn't valid");
+    }
+  }
+
+  @Benchmark
+  public boolean verify() {
+    return policy.isValid(macaroon, Fixtures.SECRET, discharges);
+  }
+}
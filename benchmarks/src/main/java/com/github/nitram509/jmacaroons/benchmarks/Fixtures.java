@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.Macaroon;
+import com.github.nitram509.jmacaroons.MacaroonsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared, deterministic test data of the benchmarks.
+ */
+final class Fixtures {
+
+  static final String LOCATION = "http://mybank/";
+  static final String SECRET = "this is our super secret key; only we should know it";
+  static final String IDENTIFIER = "we used our secret key";
+  static final String CAVEAT_KEY = "4; guaranteed random by a fair toss of the dice";
+  static final String DISCHARGE_LOCATION = "http://auth.mybank/";
+
+  private Fixtures() {
+  }
+
+  /**
+   * @param count number of caveats
+   * @param size  length of each caveat in characters, at least the length of "caveat_N = "
+   * @return distinct first party caveats of the given size
+   */
+  static List<String> caveats(int count, int size) {
+    List<String> caveats = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      StringBuilder caveat = new StringBuilder("caveat_").append(i).append(" = ");
+      while (caveat.length() < size) {
+        caveat.append('x');
+      }
+      caveats.add(caveat.toString());
+    }
+    return caveats;
+  }
+
+  static Macaroon macaroon(List<String> caveats) {
+    MacaroonsBuilder builder = Macaroon.builder(LOCATION, SECRET, IDENTIFIER);
+    for (String caveat : caveats) {
+      builder.addCaveat(caveat);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Builds a macaroon with one third party caveat, which is discharged by a chain of
+   * depth discharge macaroons, each but the last one with a third party caveat for the next one.
+   *
+   * @param depth number of discharge macaroons, at least 1
+   * @return the macaroon followed by its prepared discharge macaroons
+   */
+  static Macaroon[] dischargeChain(int depth) {
+    Macaroon m = Macaroon.builder(LOCATION, SECRET, IDENTIFIER)
+        .addCaveat(DISCHARGE_LOCATION, CAVEAT_KEY + 0, "discharge 0")
+        .build();
+    Macaroon[] chain = new Macaroon[depth + 1];
+    chain[0] = m;
+    for (int i = 0; i < depth; i++) {
+      MacaroonsBuilder d = Macaroon.builder(DISCHARGE_LOCATION, CAVEAT_KEY + i, "discharge " + i);
+      if (i + 1 < depth) {
+        d.addCaveat(DISCHARGE_LOCATION, CAVEAT_KEY + (i + 1), "discharge " + (i + 1));
+      }
+      chain[i + 1] = Macaroon.builder(m).prepareForRequest(d.build()).build();
+    }
+    return chain;
+  }
+
+  static Macaroon[] discharges(Macaroon[] chain) {
+    return Arrays.copyOfRange(chain, 1, chain.length);
+  }
+}
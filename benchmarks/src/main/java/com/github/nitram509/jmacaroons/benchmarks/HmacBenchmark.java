@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.crypto.HmacSha256;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of a macaroon's HMAC chain (a new 32 byte key per message),
+ * with the JCA and the pure Java HMAC-SHA256.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HmacBenchmark {
+
+  @Param({"16", "64", "256"})
+  public int messageSize;
+
+  private final byte[] key = new byte[32];
+  private final byte[] out = new byte[32];
+  private byte[] message;
+  private Mac jca;
+  private HmacSha256 pureJava;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    Random random = new Random(42);
+    random.nextBytes(key);
+    message = new byte[messageSize];
+    random.nextBytes(message);
+    jca = Mac.getInstance("HmacSHA256");
+    pureJava = new HmacSha256();
+  }
+
+  @Benchmark
+  public byte[] jca() throws InvalidKeyException, ShortBufferException {
+    jca.init(new SecretKeySpec(key, "HmacSHA256"));
+    jca.update(message);
+    jca.doFinal(out, 0);
+    return out;
+  }
+
+  @Benchmark
+  public byte[] pureJava() {
+    pureJava.init(key);
+    pureJava.update(message);
+    pureJava.doFinal(out, 0);
+    return out;
+  }
+}
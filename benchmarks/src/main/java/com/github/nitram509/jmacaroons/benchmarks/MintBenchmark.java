@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.Macaroon;
+import com.github.nitram509.jmacaroons.MacaroonTemplate;
+import com.github.nitram509.jmacaroons.MacaroonsBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minting a macaroon and attenuating it with first party caveats.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MintBenchmark {
+
+  @Param({"0", "5", "50", "500"})
+  public int caveats;
+
+  @Param({"16", "256"})
+  public int caveatSize;
+
+  private List<String> caveatList;
+  private Macaroon macaroon;
+  private MacaroonTemplate template;
+
+  @Setup
+  public void setUp() {
+    caveatList = Fixtures.caveats(caveats, caveatSize);
+    macaroon = Fixtures.macaroon(caveatList);
+    MacaroonTemplate.Builder builder = MacaroonTemplate.builder(Fixtures.LOCATION, Fixtures.SECRET);
+    for (String caveat : caveatList) {
+      builder.addCaveat(caveat);
+    }
+    template = builder.build();
+  }
+
+  @Benchmark
+  public Macaroon create() {
+    return Macaroon.create(Fixtures.LOCATION, Fixtures.SECRET, Fixtures.IDENTIFIER);
+  }
+
+  @Benchmark
+  public Macaroon createWithCaveats() {
+    MacaroonsBuilder builder = Macaroon.builder(Fixtures.LOCATION, Fixtures.SECRET, Fixtures.IDENTIFIER);
+    for (String caveat : caveatList) {
+      builder.addCaveat(caveat);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public Macaroon createWithCaveatsAtOnce() {
+    return Macaroon.builder(Fixtures.LOCATION, Fixtures.SECRET, Fixtures.IDENTIFIER)
+        .addCaveats(caveatList)
+        .build();
+  }
+
+  @Benchmark
+  public Macaroon mintFromTemplate() {
+    return template.mint(Fixtures.IDENTIFIER);
+  }
+
+  @Benchmark
+  public Macaroon attenuate() {
+    return Macaroon.builder(macaroon)
+        .addCaveat("attenuated = true")
+        .build();
+  }
+}
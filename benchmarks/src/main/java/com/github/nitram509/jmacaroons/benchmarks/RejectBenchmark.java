@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.Macaroon;
+import com.github.nitram509.jmacaroons.VerificationPolicy;
+import com.github.nitram509.jmacaroons.VerificationResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejection of a macaroon, whose first caveat isn't satisfied,
+ * by the timing-safe default and by a fail fast {@link VerificationPolicy}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RejectBenchmark {
+
+  @Param({"5", "50"})
+  public int caveats;
+
+  private Macaroon macaroon;
+  private VerificationPolicy timingSafe;
+  private VerificationPolicy failFast;
+
+  @Setup
+  public void setUp() {
+    List<String> caveatList = Fixtures.caveats(caveats, 16);
+    macaroon = Fixtures.macaroon(caveatList);
+    VerificationPolicy.Builder timingSafeBuilder = VerificationPolicy.builder();
+    VerificationPolicy.Builder failFastBuilder = VerificationPolicy.builder().failFast(true);
+    // all but the first caveat are satisfied
+    for (String caveat : caveatList.subList(1, caveatList.size())) {
+      timingSafeBuilder.satisfyExact(caveat);
+      failFastBuilder.satisfyExact(caveat);
+    }
+    timingSafe = timingSafeBuilder.build();
+    failFast = failFastBuilder.build();
+  }
+
+  @Benchmark
+  public VerificationResult timingSafe() {
+    return timingSafe.verify(macaroon, Fixtures.SECRET);
+  }
+
+  @Benchmark
+  public VerificationResult failFast() {
+    return failFast.verify(macaroon, Fixtures.SECRET);
+  }
+}
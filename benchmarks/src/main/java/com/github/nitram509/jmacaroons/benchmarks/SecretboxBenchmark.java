@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl.xsalsa20;
+import com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl.xsalsa20poly1305;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bundled jnacl secretbox (XSalsa20-Poly1305), which encrypts the key of every third party caveat.
+ * The default message size is the one of a third party caveat: 32 zero bytes plus the 32 byte key.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SecretboxBenchmark {
+
+  @Param({"64", "1024"})
+  public int messageSize;
+
+  private final byte[] key = new byte[32];
+  private final byte[] nonce = new byte[24];
+  private byte[] message;
+  private byte[] box;
+  private byte[] opened;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    random.nextBytes(key);
+    random.nextBytes(nonce);
+    message = new byte[messageSize];
+    random.nextBytes(message);
+    for (int i = 0; i < 32; i++) {
+      message[i] = 0;
+    }
+    box = new byte[messageSize];
+    opened = new byte[messageSize];
+    xsalsa20poly1305.crypto_secretbox(box, message, messageSize, nonce, key);
+  }
+
+  @Benchmark
+  public byte[] stream() {
+    xsalsa20.crypto_stream_xor(opened, message, messageSize, nonce, key);
+    return opened;
+  }
+
+  @Benchmark
+  public byte[] secretbox() {
+    xsalsa20poly1305.crypto_secretbox(box, message, messageSize, nonce, key);
+    return box;
+  }
+
+  @Benchmark
+  public byte[] secretboxOpen() {
+    xsalsa20poly1305.crypto_secretbox_open(opened, box, messageSize, nonce, key);
+    return opened;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.Macaroon;
+import com.github.nitram509.jmacaroons.MacaroonsSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization in the V1 and V2 format.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+  @Param({"0", "5", "50", "500"})
+  public int caveats;
+
+  @Param({"16", "256"})
+  public int caveatSize;
+
+  private Macaroon macaroon;
+  private String serializedV1;
+  private String serializedV2;
+
+  @Setup
+  public void setUp() {
+    macaroon = Fixtures.macaroon(Fixtures.caveats(caveats, caveatSize));
+    serializedV1 = MacaroonsSerializer.V1.serialize(macaroon);
+    serializedV2 = MacaroonsSerializer.V2.serialize(macaroon);
+  }
+
+  @Benchmark
+  public String serializeV1() {
+    return MacaroonsSerializer.V1.serialize(macaroon);
+  }
+
+  @Benchmark
+  public String serializeV2() {
+    return MacaroonsSerializer.V2.serialize(macaroon);
+  }
+
+  @Benchmark
+  public Macaroon deserializeV1() {
+    return MacaroonsSerializer.V1.deserialize(serializedV1);
+  }
+
+  @Benchmark
+  public Macaroon deserializeV2() {
+    return MacaroonsSerializer.V2.deserialize(serializedV2);
+  }
+}
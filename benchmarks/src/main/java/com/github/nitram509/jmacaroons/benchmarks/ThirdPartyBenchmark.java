@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.Macaroon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding a third party caveat and binding a discharge macaroon for a request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThirdPartyBenchmark {
+
+  private Macaroon macaroon;
+  private Macaroon discharge;
+
+  @Setup
+  public void setUp() {
+    Macaroon[] chain = Fixtures.dischargeChain(1);
+    macaroon = chain[0];
+    discharge = Macaroon.create(Fixtures.DISCHARGE_LOCATION, Fixtures.CAVEAT_KEY + 0, "discharge 0");
+  }
+
+  @Benchmark
+  public Macaroon addThirdPartyCaveat() {
+    return Macaroon.builder(Fixtures.LOCATION, Fixtures.SECRET, Fixtures.IDENTIFIER)
+        .addCaveat(Fixtures.DISCHARGE_LOCATION, Fixtures.CAVEAT_KEY, "discharge 0")
+        .build();
+  }
+
+  @Benchmark
+  public Macaroon prepareForRequest() {
+    return Macaroon.builder(macaroon)
+        .prepareForRequest(discharge)
+        .build();
+  }
+}
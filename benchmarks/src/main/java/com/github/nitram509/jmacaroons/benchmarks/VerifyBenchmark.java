@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.Macaroon;
+import com.github.nitram509.jmacaroons.MacaroonsVerifier;
+import com.github.nitram509.jmacaroons.VerificationPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification of a macaroon with first party caveats, which are all satisfied exactly.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerifyBenchmark {
+
+  @Param({"0", "5", "50", "500"})
+  public int caveats;
+
+  @Param({"16", "256"})
+  public int caveatSize;
+
+  private List<String> caveatList;
+  private Macaroon macaroon;
+  private VerificationPolicy policy;
+
+  @Setup
+  public void setUp() {
+    caveatList = Fixtures.caveats(caveats, caveatSize);
+    macaroon = Fixtures.macaroon(caveatList);
+    VerificationPolicy.Builder builder = VerificationPolicy.builder();
+    for (String caveat : caveatList) {
+      builder.satisfyExact(caveat);
+    }
+    policy = builder.build();
+  }
+
+  @Benchmark
+  public boolean macaroonsVerifier() {
+    MacaroonsVerifier verifier = new MacaroonsVerifier(macaroon);
+    for (String caveat : caveatList) {
+      verifier.satisfyExact(caveat);
+    }
+    return verifier.isValid(Fixtures.SECRET);
+  }
+
+  @Benchmark
+  public boolean verificationPolicy() {
+    return policy.isValid(macaroon, Fixtures.SECRET);
+  }
+}
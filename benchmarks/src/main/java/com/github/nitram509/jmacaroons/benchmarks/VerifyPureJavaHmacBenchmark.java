@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.benchmarks;
+
+import com.github.nitram509.jmacaroons.CryptoProviders;
+import com.github.nitram509.jmacaroons.PureJavaHmacCryptoProvider;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Same as {@link VerifyBenchmark}, but with the {@link PureJavaHmacCryptoProvider}.
+ */
+public class VerifyPureJavaHmacBenchmark extends VerifyBenchmark {
+
+  @Setup
+  public void installProvider() {
+    CryptoProviders.set(new PureJavaHmacCryptoProvider());
+  }
+
+  @TearDown
+  public void resetProvider() {
+    CryptoProviders.set(null);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import com.github.nitram509.jmacaroons.util.Base64;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Base of the built-in serializers, which compute the exact size of a serialized macaroon without serializing it
+ * and write its binary form directly into a {@link ByteBuffer}.
+ * All other forms (base64, streams, channels) are derived from these two primitives,
+ * with exactly sized buffers.
+ * The string and binary forms are memoized on the macaroon, each only when it's asked for,
+ * so serializing the same macaroon again is cheap, but a macaroon only serialized to strings doesn't keep its binary form.
+ */
+abstract class AbstractMacaroonsSerializer implements MacaroonsSerializer {
+
+    /**
+     * @param macaroon the macaroon
+     * @return the exact number of bytes of the binary form, computed without serializing
+     */
+    abstract int computeBinarySize(Macaroon macaroon);
+
+    @Override
+    public int serializedSize(Macaroon macaroon) {
+        return Base64.encodedLength(serializedBinarySize(macaroon), false);
+    }
+
+    /**
+     * Writes the binary form, the buffer must have at least {@link #computeBinarySize(Macaroon)} bytes remaining.
+     *
+     * @param macaroon the macaroon
+     * @param out      the buffer
+     */
+    abstract void writeBinary(Macaroon macaroon, ByteBuffer out);
+
+    /**
+     * @return the format version, which is the index of the memoized forms, see {@link SerializedForms}
+     */
+    abstract int version();
+
+    @Override
+    public String serialize(Macaroon macaroon) {
+        String string = macaroon.serializedForms().string(version());
+        if (string == null) {
+            string = new String(Base64.encodeUrlSafe(binaryToEncode(macaroon), false));
+            macaroon.serializedForms(macaroon.serializedForms().withString(version(), string));
+        }
+        return string;
+    }
+
+    @Override
+    public void serialize(Macaroon macaroon, Appendable out) throws IOException {
+        String string = macaroon.serializedForms().string(version());
+        if (string != null) {
+            out.append(string);
+        } else {
+            Base64.encodeUrlSafe(binaryToEncode(macaroon), out);
+        }
+    }
+
+    @Override
+    public void serialize(Macaroon macaroon, OutputStream out) throws IOException {
+        Base64.encodeUrlSafe(binaryToEncode(macaroon), out);
+    }
+
+    @Override
+    public byte[] serializeBinary(Macaroon macaroon) {
+        return binary(macaroon).clone();
+    }
+
+    @Override
+    public void serializeBinary(Macaroon macaroon, OutputStream out) throws IOException {
+        out.write(binary(macaroon));
+    }
+
+    @Override
+    public void serializeBinary(Macaroon macaroon, ByteBuffer out) {
+        byte[] binary = macaroon.serializedForms().binary(version());
+        if (binary != null) {
+            out.put(binary);
+            return;
+        }
+        if (out.remaining() < serializedBinarySize(macaroon)) {
+            throw new BufferOverflowException();
+        }
+        writeBinary(macaroon, out);
+    }
+
+    @Override
+    public void serializeBinary(Macaroon macaroon, WritableByteChannel out) throws IOException {
+        ByteBuffer binary = ByteBuffer.wrap(binary(macaroon)).asReadOnlyBuffer();
+        while (binary.hasRemaining()) {
+            out.write(binary);
+        }
+    }
+
+    @Override
+    public int serializedBinarySize(Macaroon macaroon) {
+        byte[] binary = macaroon.serializedForms().binary(version());
+        return binary != null ? binary.length : computeBinarySize(macaroon);
+    }
+
+    /**
+     * @param macaroon the macaroon
+     * @return the memoized binary form, which must not be modified
+     */
+    private byte[] binary(Macaroon macaroon) {
+        byte[] binary = macaroon.serializedForms().binary(version());
+        if (binary == null) {
+            binary = newBinary(macaroon);
+            macaroon.serializedForms(macaroon.serializedForms().withBinary(version(), binary));
+        }
+        return binary;
+    }
+
+    /**
+     * @param macaroon the macaroon
+     * @return the memoized binary form, if there's one, else a new one, which isn't memoized
+     */
+    private byte[] binaryToEncode(Macaroon macaroon) {
+        byte[] binary = macaroon.serializedForms().binary(version());
+        return binary != null ? binary : newBinary(macaroon);
+    }
+
+    private byte[] newBinary(Macaroon macaroon) {
+        byte[] binary = new byte[computeBinarySize(macaroon)];
+        writeBinary(macaroon, ByteBuffer.wrap(binary));
+        return binary;
+    }
+
+    /**
+     * @param s a string
+     * @return the number of bytes of the string in {@link MacaroonsConstants#IDENTIFIER_CHARSET}, without encoding it
+     */
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates are replaced by '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
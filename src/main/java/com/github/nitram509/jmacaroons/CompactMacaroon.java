@@ -0,0 +1,286 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import com.github.nitram509.jmacaroons.util.Base64;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.github.nitram509.jmacaroons.CaveatPacket.Type;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_HASH_BYTES;
+import static com.github.nitram509.jmacaroons.MacaroonsSerializerV2.END_OF_SECTION;
+import static com.github.nitram509.jmacaroons.MacaroonsSerializerV2.IDENTIFIER;
+import static com.github.nitram509.jmacaroons.MacaroonsSerializerV2.LOCATION;
+import static com.github.nitram509.jmacaroons.MacaroonsSerializerV2.SIGNATURE;
+import static com.github.nitram509.jmacaroons.MacaroonsSerializerV2.VERIFIER_ID;
+import static com.github.nitram509.jmacaroons.MacaroonsSerializerV2.rejectIfFalse;
+import static com.github.nitram509.jmacaroons.util.BinHex.bin2hex;
+
+/**
+ * A memory efficient, immutable form of a {@link Macaroon}, e.g. for keeping many macaroons in a cache.
+ * <p>
+ * All fields are slices of one backing array, which holds the macaroon in the {@link MacaroonsSerializer#V2} binary format.
+ * Location, identifier and the hex signature are decoded on each call and not retained,
+ * thus callers should keep the results, if they need them repeatedly.
+ * Use {@link #toMacaroon()} for building, verifying or inspecting the macaroon.
+ * </p>
+ * <p>
+ * When deserialized, the decoded buffer is kept as it is and caveats are only indexed, not copied.
+ * So requests can be rejected by identifier or location cheaply, before any caveat is materialized,
+ * see {@link #getCaveatPackets()}.
+ * </p>
+ */
+public final class CompactMacaroon implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final java.util.Base64.Decoder BASE64_DECODER = java.util.Base64.getUrlDecoder();
+
+  private final byte[] data;
+  private final int locationOffset;
+  private final int locationLength;
+  private final int identifierOffset;
+  private final int identifierLength;
+  private final int caveatsOffset;
+  private final int caveatPacketCount;
+
+  private CompactMacaroon(byte[] data) {
+    MacaroonsSerializerV2.Parser in = new MacaroonsSerializerV2.Parser(data, 0, data.length);
+    rejectIfFalse(in.readUnsignedByte() == 2, "Incorrect version");
+    if (in.peek() == LOCATION) {
+      locationLength = in.readFieldHeader(LOCATION);
+      locationOffset = in.position();
+      in.skip(locationLength);
+    } else {
+      locationLength = -1;
+      locationOffset = -1;
+    }
+    identifierLength = in.readFieldHeader(IDENTIFIER);
+    identifierOffset = in.position();
+    in.skip(identifierLength);
+    rejectIfFalse(in.readUnsignedByte() == END_OF_SECTION, "Invalid macaroon");
+
+    caveatsOffset = in.position();
+    int packets = 0;
+    while (in.peek() != END_OF_SECTION) {
+      if (in.peek() == LOCATION) {
+        in.skip(in.readFieldHeader(LOCATION));
+        packets++;
+      }
+      in.skip(in.readFieldHeader(IDENTIFIER));
+      packets++;
+      if (in.peek() == VERIFIER_ID) {
+        in.skip(in.readFieldHeader(VERIFIER_ID));
+        packets++;
+      }
+      rejectIfFalse(in.readUnsignedByte() == END_OF_SECTION, "Invalid macaroon");
+    }
+    caveatPacketCount = packets;
+    in.readUnsignedByte();
+    rejectIfFalse(in.readFieldHeader(SIGNATURE) == MACAROON_HASH_BYTES, "Invalid authentication tag");
+    in.skip(MACAROON_HASH_BYTES);
+    in.rejectTrailingData();
+    this.data = data;
+  }
+
+  /**
+   * The V2 binary form is written into a new array, it's not memoized on the given macaroon.
+   *
+   * @param macaroon macaroon
+   * @return the compact form of the macaroon
+   * @throws IllegalArgumentException if the caveats of the macaroon can't be represented in the V2 format
+   */
+  public static CompactMacaroon of(Macaroon macaroon) {
+    MacaroonsSerializerV2 v2 = (MacaroonsSerializerV2) MacaroonsSerializer.V2;
+    byte[] binary = new byte[v2.computeBinarySize(macaroon)];
+    v2.writeBinary(macaroon, ByteBuffer.wrap(binary));
+    return new CompactMacaroon(binary);
+  }
+
+  /**
+   * Deserializes a macaroon in the {@link MacaroonsSerializer#V2} format, without materializing its caveats.
+   *
+   * @param serializedMacaroon base64 (URL safe) encoded macaroon
+   * @return {@link CompactMacaroon}
+   * @throws NotDeSerializableException when serialized macaroon is not valid
+   */
+  public static CompactMacaroon deserialize(String serializedMacaroon) {
+    byte[] binary;
+    try {
+      binary = BASE64_DECODER.decode(serializedMacaroon);
+    } catch (IllegalArgumentException e) {
+      throw new NotDeSerializableException("Unable to decode macaroon", e);
+    }
+    return new CompactMacaroon(binary);
+  }
+
+  /**
+   * Same as {@link #deserialize(String)} for the raw binary format.
+   *
+   * @param serializedMacaroon binary macaroon, it's copied
+   * @return {@link CompactMacaroon}
+   * @throws NotDeSerializableException when serialized macaroon is not valid
+   */
+  public static CompactMacaroon deserializeBinary(byte[] serializedMacaroon) {
+    return new CompactMacaroon(serializedMacaroon.clone());
+  }
+
+  /**
+   * @return the location or null
+   */
+  public String getLocation() {
+    return locationOffset < 0 ? null : new String(data, locationOffset, locationLength, IDENTIFIER_CHARSET);
+  }
+
+  public String getIdentifier() {
+    return new String(data, identifierOffset, identifierLength, IDENTIFIER_CHARSET);
+  }
+
+  /**
+   * @return the signature in hex, like {@link Macaroon#signature}
+   */
+  public String getSignature() {
+    return bin2hex(getSignatureBytes());
+  }
+
+  /**
+   * @return a copy of the raw signature
+   */
+  public byte[] getSignatureBytes() {
+    return Arrays.copyOfRange(data, data.length - MACAROON_HASH_BYTES, data.length);
+  }
+
+  /**
+   * @return true, if the macaroon has at least one caveat
+   */
+  public boolean hasCaveats() {
+    return caveatPacketCount > 0;
+  }
+
+  /**
+   * @return number of caveat packets, same as the length of {@link Macaroon#caveatPackets}
+   */
+  public int getCaveatPacketCount() {
+    return caveatPacketCount;
+  }
+
+  /**
+   * The caveat packets in the order of {@link Macaroon#caveatPackets}.
+   * Each packet is decoded from the backing array, when the iterator reaches it.
+   *
+   * @return a view of the caveat packets
+   */
+  public Iterable<CaveatPacket> getCaveatPackets() {
+    return CaveatPacketIterator::new;
+  }
+
+  /**
+   * @return the equal {@link Macaroon}, which already has its {@link MacaroonsSerializer#V2} binary form memoized
+   */
+  public Macaroon toMacaroon() {
+    Macaroon macaroon = ((MacaroonsSerializerV2) MacaroonsSerializer.V2).deserialize(data, 0, data.length);
+    macaroon.serializedForms(SerializedForms.EMPTY.withBinary(2, data));
+    return macaroon;
+  }
+
+  /**
+   * @return same as {@link MacaroonsSerializer#V2} does serialize the macaroon
+   */
+  public String serialize() {
+    return new String(Base64.encodeUrlSafe(data, false));
+  }
+
+  /**
+   * @return a copy of the {@link MacaroonsSerializer#V2} binary form
+   */
+  public byte[] serializeBinary() {
+    return data.clone();
+  }
+
+  /**
+   * @return number of bytes of {@link #serializeBinary()}
+   */
+  public int serializedBinarySize() {
+    return data.length;
+  }
+
+  /**
+   * Walks the caveat sections and emits the packets of a section as cid, vid, cl,
+   * the same order as {@link MacaroonsSerializerV2} deserializes them.
+   */
+  private final class CaveatPacketIterator implements Iterator<CaveatPacket> {
+    private final MacaroonsSerializerV2.Parser in = new MacaroonsSerializerV2.Parser(data, caveatsOffset, data.length - caveatsOffset);
+    private final CaveatPacket[] section = new CaveatPacket[3];
+    private int next = section.length;
+    private int remaining = caveatPacketCount;
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public CaveatPacket next() {
+      if (remaining == 0) {
+        throw new NoSuchElementException();
+      }
+      while (next == section.length || section[next] == null) {
+        if (next == section.length) {
+          readSection();
+        } else {
+          next++;
+        }
+      }
+      CaveatPacket packet = section[next];
+      section[next++] = null;
+      remaining--;
+      return packet;
+    }
+
+    private void readSection() {
+      CaveatPacket location = in.peek() == LOCATION ? new CaveatPacket(Type.cl, in.readField(LOCATION)) : null;
+      section[0] = new CaveatPacket(Type.cid, in.readField(IDENTIFIER));
+      section[1] = in.peek() == VERIFIER_ID ? new CaveatPacket(Type.vid, in.readField(VERIFIER_ID)) : null;
+      section[2] = location;
+      in.readUnsignedByte(); // END_OF_SECTION
+      next = 0;
+    }
+  }
+
+  /**
+   * The offsets are validated again, instead of trusting the serialized ones.
+   */
+  private Object readResolve() {
+    return new CompactMacaroon(data);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return Arrays.equals(data, ((CompactMacaroon) o).data);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(data);
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import java.util.Arrays;
+
+/**
+ * Service provider interface for the cryptographic primitives of macaroons:
+ * HMAC-SHA256, the NaCl secretbox (XSalsa20-Poly1305) and randomness.
+ * <p>
+ * Implementations are found via {@link java.util.ServiceLoader} (a file
+ * <code>META-INF/services/com.github.nitram509.jmacaroons.CryptoProvider</code>)
+ * or installed with {@link CryptoProviders#set(CryptoProvider)}.
+ * Implementations must be thread-safe.
+ * </p>
+ */
+public interface CryptoProvider {
+
+  /**
+   * out[outOffset, outOffset+32] = HMAC-SHA256(key, message[offset, offset+length])
+   *
+   * @param key       key
+   * @param message   message
+   * @param offset    offset of the message
+   * @param length    length of the message
+   * @param out       output buffer, may be the same array as key or message
+   * @param outOffset offset of the output
+   */
+  void hmacSha256(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset);
+
+  /**
+   * NaCl crypto_secretbox, the first 32 bytes of the plaintext must be zero,
+   * the first 16 bytes of the ciphertext will be zero.
+   *
+   * @param ciphertext output, at least length bytes
+   * @param plaintext  plaintext
+   * @param length     length of plaintext and ciphertext
+   * @param nonce      24 bytes nonce
+   * @param key        32 bytes key
+   * @return 0 on success, -1 otherwise
+   */
+  int secretbox(byte[] ciphertext, byte[] plaintext, int length, byte[] nonce, byte[] key);
+
+  /**
+   * NaCl crypto_secretbox_open, the first 16 bytes of the ciphertext must be zero,
+   * the first 32 bytes of the plaintext will be zero.
+   *
+   * @param plaintext  output, at least length bytes
+   * @param ciphertext ciphertext
+   * @param length     length of plaintext and ciphertext
+   * @param nonce      24 bytes nonce
+   * @param key        32 bytes key
+   * @return 0 on success, -1 if the ciphertext is not authentic
+   */
+  int secretboxOpen(byte[] plaintext, byte[] ciphertext, int length, byte[] nonce, byte[] key);
+
+  /**
+   * NaCl crypto_secretbox without the zero padding:
+   * ciphertext[ciphertextOffset, ciphertextOffset+16+length] = 16 bytes tag || encrypted plaintext[plaintextOffset, plaintextOffset+length].
+   * The default implementation copies into padded buffers and calls {@link #secretbox(byte[], byte[], int, byte[], byte[])}.
+   *
+   * @param ciphertext       output, may be the same array as plaintext or nonce, but it may overlap the plaintext only in place,
+   *                         that's ciphertextOffset+16 == plaintextOffset, and it mustn't overlap the nonce
+   * @param ciphertextOffset offset of the output
+   * @param plaintext        plaintext
+   * @param plaintextOffset  offset of the plaintext
+   * @param length           length of the plaintext
+   * @param nonce            nonce, 24 bytes starting at nonceOffset
+   * @param nonceOffset      offset of the nonce
+   * @param key              32 bytes key
+   * @return 0 on success, -1 otherwise
+   */
+  default int secretbox(byte[] ciphertext, int ciphertextOffset, byte[] plaintext, int plaintextOffset, int length,
+                        byte[] nonce, int nonceOffset, byte[] key) {
+    byte[] paddedPlaintext = new byte[32 + length];
+    byte[] paddedCiphertext = new byte[32 + length];
+    System.arraycopy(plaintext, plaintextOffset, paddedPlaintext, 32, length);
+    int err = secretbox(paddedCiphertext, paddedPlaintext, paddedPlaintext.length, Arrays.copyOfRange(nonce, nonceOffset, nonceOffset + 24), key);
+    if (err == 0) {
+      System.arraycopy(paddedCiphertext, 16, ciphertext, ciphertextOffset, 16 + length);
+    }
+    return err;
+  }
+
+  /**
+   * NaCl crypto_secretbox_open without the zero padding:
+   * ciphertext[ciphertextOffset, ciphertextOffset+length] is the 16 bytes tag followed by the encrypted plaintext,
+   * plaintext[plaintextOffset, plaintextOffset+length-16] is only written, if the ciphertext is authentic.
+   * The default implementation copies into padded buffers and calls {@link #secretboxOpen(byte[], byte[], int, byte[], byte[])}.
+   *
+   * @param plaintext        output, may be the same array as ciphertext or nonce, but it may overlap the ciphertext only in place,
+   *                         that's plaintextOffset == ciphertextOffset+16, and it mustn't overlap the nonce
+   * @param plaintextOffset  offset of the output
+   * @param ciphertext       tag and ciphertext
+   * @param ciphertextOffset offset of the ciphertext
+   * @param length           length of tag and ciphertext
+   * @param nonce            nonce, 24 bytes starting at nonceOffset
+   * @param nonceOffset      offset of the nonce
+   * @param key              32 bytes key
+   * @return 0 on success, -1 if the ciphertext is too short or not authentic
+   */
+  default int secretboxOpen(byte[] plaintext, int plaintextOffset, byte[] ciphertext, int ciphertextOffset, int length,
+                            byte[] nonce, int nonceOffset, byte[] key) {
+    if (length < 16) {
+      return -1;
+    }
+    byte[] paddedCiphertext = new byte[16 + length];
+    byte[] paddedPlaintext = new byte[16 + length];
+    System.arraycopy(ciphertext, ciphertextOffset, paddedCiphertext, 16, length);
+    int err = secretboxOpen(paddedPlaintext, paddedCiphertext, paddedCiphertext.length, Arrays.copyOfRange(nonce, nonceOffset, nonceOffset + 24), key);
+    if (err == 0) {
+      System.arraycopy(paddedPlaintext, 32, plaintext, plaintextOffset, length - 16);
+    }
+    return err;
+  }
+
+  /**
+   * Fills the array with cryptographically strong random bytes.
+   *
+   * @param bytes bytes
+   */
+  void nextBytes(byte[] bytes);
+}
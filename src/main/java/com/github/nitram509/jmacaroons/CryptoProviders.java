@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link CryptoProvider} used by the library.
+ * At first use, the first provider found by {@link ServiceLoader} is taken,
+ * if there's none, the {@link #defaultProvider() default} is used.
+ */
+public final class CryptoProviders {
+
+  private static final CryptoProvider DEFAULT_PROVIDER = new DefaultCryptoProvider();
+  private static volatile CryptoProvider provider = load();
+
+  private CryptoProviders() {
+  }
+
+  /**
+   * @return the provider in use
+   */
+  public static CryptoProvider get() {
+    return provider;
+  }
+
+  /**
+   * @param cryptoProvider the provider to use from now on, null to switch back to the default
+   */
+  public static void set(CryptoProvider cryptoProvider) {
+    provider = cryptoProvider != null ? cryptoProvider : DEFAULT_PROVIDER;
+  }
+
+  /**
+   * @return the built-in provider, HMAC by {@link javax.crypto.Mac} and secretbox by jnacl
+   */
+  public static CryptoProvider defaultProvider() {
+    return DEFAULT_PROVIDER;
+  }
+
+  static boolean isDefault(CryptoProvider cryptoProvider) {
+    return cryptoProvider == DEFAULT_PROVIDER;
+  }
+
+  private static CryptoProvider load() {
+    Iterator<CryptoProvider> providers = ServiceLoader.load(CryptoProvider.class, CryptoProviders.class.getClassLoader()).iterator();
+    return providers.hasNext() ? providers.next() : DEFAULT_PROVIDER;
+  }
+}
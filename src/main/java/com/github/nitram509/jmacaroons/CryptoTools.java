@@ -16,37 +16,32 @@
 
 package com.github.nitram509.jmacaroons;
 
-import com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl.xsalsa20poly1305;
-
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 
 import static com.github.nitram509.jmacaroons.MacaroonsConstants.*;
-import static com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl.xsalsa20poly1305.crypto_secretbox_open;
-import static java.lang.System.arraycopy;
 
 class CryptoTools {
 
   private static final String HMAC_SHA_256_ALGO = "HmacSHA256";
-  private static final String MACAROONS_MAGIC_KEY = "macaroons-key-generator";
+  static final String MACAROONS_MAGIC_KEY = "macaroons-key-generator";
+  private static final byte[] BIND_KEY = new byte[MACAROON_HASH_BYTES];
 
   private static final Mac HMACSHA256_PROTOTYPE;
-  private static final SecureRandom SECURE_RANDOM;
 
   static {
     try {
       HMACSHA256_PROTOTYPE = Mac.getInstance(HMAC_SHA_256_ALGO);
-      SECURE_RANDOM = new SecureRandom();
     } catch (NoSuchAlgorithmException e) {
       throw new GeneralSecurityRuntimeException(e);
     }
   }
 
   static byte[] generate_derived_key(byte[] variableKey) throws InvalidKeyException, NoSuchAlgorithmException {
-    return macaroon_hmac(MACAROONS_MAGIC_KEY.getBytes(IDENTIFIER_CHARSET), variableKey);
+    byte[] derivedKey = new byte[MACAROON_HASH_BYTES];
+    HmacChain.get().deriveKey(variableKey, derivedKey);
+    return derivedKey;
   }
 
   static byte[] macaroon_hmac(byte[] key, String message) throws NoSuchAlgorithmException, InvalidKeyException {
@@ -60,55 +55,58 @@ class CryptoTools {
   }
 
   static byte[] macaroon_hmac(byte[] key, byte[] message) throws NoSuchAlgorithmException, InvalidKeyException {
-    Mac sha256HMAC = createNewHmacInstance();
-    SecretKeySpec secret_key = new SecretKeySpec(key, HMAC_SHA_256_ALGO);
-    sha256HMAC.init(secret_key);
-    return sha256HMAC.doFinal(message);
+    byte[] out = new byte[MACAROON_HASH_BYTES];
+    HmacChain.get().hmac(key, message, out);
+    return out;
   }
 
   static byte[] macaroon_hash2(byte[] key, byte[] message1, byte[] message2) throws NoSuchAlgorithmException, InvalidKeyException {
-    byte[] tmp = new byte[2 * MACAROON_HASH_BYTES];
-    arraycopy(macaroon_hmac(key, message1), 0, tmp, 0, MACAROON_HASH_BYTES);
-    arraycopy(macaroon_hmac(key, message2), 0, tmp, MACAROON_HASH_BYTES, MACAROON_HASH_BYTES);
-    return macaroon_hmac(key, tmp);
+    byte[] out = new byte[MACAROON_HASH_BYTES];
+    HmacChain.get().hash2(key, message1, message2, out);
+    return out;
   }
 
   static ThirdPartyPacket macaroon_add_third_party_caveat_raw(byte[] old_sig, byte[] key, String identifier) throws InvalidKeyException, NoSuchAlgorithmException {
 
-    byte[] enc_nonce = new byte[MACAROON_SECRET_NONCE_BYTES];
-    SECURE_RANDOM.nextBytes(enc_nonce);
-    byte[] enc_plaintext = new byte[MACAROON_SECRET_TEXT_ZERO_BYTES + MACAROON_HASH_BYTES];
-    byte[] enc_ciphertext = new byte[MACAROON_SECRET_TEXT_ZERO_BYTES + MACAROON_HASH_BYTES];
-    /* now encrypt the key to give us vid */
-    arraycopy(key, 0, enc_plaintext, MACAROON_SECRET_TEXT_ZERO_BYTES, MACAROON_HASH_BYTES);
-
-    macaroon_secretbox(old_sig, enc_nonce, enc_plaintext, enc_ciphertext);
-
+    /* vid = nonce || secretbox(key), the box is sealed right behind the random nonce */
     byte[] vid = new byte[VID_NONCE_KEY_SZ];
-    arraycopy(enc_nonce, 0, vid, 0, MACAROON_SECRET_NONCE_BYTES);
-    arraycopy(enc_ciphertext, MACAROON_SECRET_BOX_ZERO_BYTES, vid, MACAROON_SECRET_NONCE_BYTES, VID_NONCE_KEY_SZ - MACAROON_SECRET_NONCE_BYTES);
+    CryptoProviders.get().nextBytes(vid);
+    macaroon_secretbox(old_sig, vid, key, vid, MACAROON_SECRET_NONCE_BYTES);
 
     byte[] new_sig = macaroon_hash2(old_sig, vid, identifier.getBytes(IDENTIFIER_CHARSET));
     return new ThirdPartyPacket(new_sig, vid);
   }
 
   static byte[] macaroon_bind(byte[] Msig, byte[] MPsig) throws InvalidKeyException, NoSuchAlgorithmException {
-    byte[] key = new byte[MACAROON_HASH_BYTES];
-    return macaroon_hash2(key, Msig, MPsig);
+    byte[] out = new byte[MACAROON_HASH_BYTES];
+    macaroon_bind(Msig, MPsig, out);
+    return out;
+  }
+
+  static void macaroon_bind(byte[] Msig, byte[] MPsig, byte[] out) throws InvalidKeyException, NoSuchAlgorithmException {
+    HmacChain.get().hash2(BIND_KEY, Msig, MPsig, out);
   }
 
-  private static void macaroon_secretbox(byte[] key, byte[] nonce, byte[] plaintext, byte[] ciphertext) throws GeneralSecurityRuntimeException {
-    int err_code = xsalsa20poly1305.crypto_secretbox(ciphertext, plaintext, plaintext.length, nonce, key);
+  /**
+   * out[outOffset, outOffset+{@link MacaroonsConstants#SECRET_BOX_OVERHEAD}+32] = secretbox(plaintext), nonce is nonce[0, 24]
+   */
+  private static void macaroon_secretbox(byte[] key, byte[] nonce, byte[] plaintext, byte[] out, int outOffset) throws GeneralSecurityRuntimeException {
+    int err_code = CryptoProviders.get().secretbox(out, outOffset, plaintext, 0, plaintext.length, nonce, 0, key);
     if (err_code != 0) {
       throw new GeneralSecurityRuntimeException("Error while creating secret box. err_code=" + err_code);
     }
   }
 
-  static int macaroon_secretbox_open(byte[] enc_key, byte[] enc_nonce, byte[] ciphertext, byte[] plaintext) {
-    return crypto_secretbox_open(plaintext, ciphertext, ciphertext.length, enc_nonce, enc_key);
+  /**
+   * plaintext = open(ciphertext[offset, offset+length]), nonce is nonce[0, 24]
+   *
+   * @return 0 on success, -1 if the ciphertext is not authentic
+   */
+  static int macaroon_secretbox_open(byte[] enc_key, byte[] enc_nonce, byte[] ciphertext, int offset, int length, byte[] plaintext) {
+    return CryptoProviders.get().secretboxOpen(plaintext, 0, ciphertext, offset, length, enc_nonce, 0, enc_key);
   }
 
-  private static Mac createNewHmacInstance() throws NoSuchAlgorithmException {
+  static Mac createNewHmacInstance() throws NoSuchAlgorithmException {
     try {
       Mac clonedMac = (Mac) HMACSHA256_PROTOTYPE.clone();
       clonedMac.reset();
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl.xsalsa20poly1305;
+
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+
+/**
+ * The default: HMAC by the built-in {@link HmacChain}s on top of {@link javax.crypto.Mac},
+ * secretbox by jnacl and randomness by {@link SecureRandom}.
+ */
+final class DefaultCryptoProvider implements CryptoProvider {
+
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  @Override
+  public void hmacSha256(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset) {
+    try {
+      HmacChain.builtIn().hmac(key, message, offset, length, out, outOffset);
+    } catch (InvalidKeyException e) {
+      throw new GeneralSecurityRuntimeException(e);
+    }
+  }
+
+  @Override
+  public int secretbox(byte[] ciphertext, byte[] plaintext, int length, byte[] nonce, byte[] key) {
+    return xsalsa20poly1305.crypto_secretbox(ciphertext, plaintext, length, nonce, key);
+  }
+
+  @Override
+  public int secretboxOpen(byte[] plaintext, byte[] ciphertext, int length, byte[] nonce, byte[] key) {
+    return xsalsa20poly1305.crypto_secretbox_open(plaintext, ciphertext, length, nonce, key);
+  }
+
+  @Override
+  public int secretbox(byte[] ciphertext, int ciphertextOffset, byte[] plaintext, int plaintextOffset, int length,
+                       byte[] nonce, int nonceOffset, byte[] key) {
+    return xsalsa20poly1305.crypto_secretbox_easy(ciphertext, ciphertextOffset, plaintext, plaintextOffset, length, nonce, nonceOffset, key);
+  }
+
+  @Override
+  public int secretboxOpen(byte[] plaintext, int plaintextOffset, byte[] ciphertext, int ciphertextOffset, int length,
+                           byte[] nonce, int nonceOffset, byte[] key) {
+    return xsalsa20poly1305.crypto_secretbox_open_easy(plaintext, plaintextOffset, ciphertext, ciphertextOffset, length, nonce, nonceOffset, key);
+  }
+
+  @Override
+  public void nextBytes(byte[] bytes) {
+    secureRandom.nextBytes(bytes);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of derived keys per secret.
+ * Secrets and derived keys are stored as copies and are overwritten with zeros,
+ * when they get evicted or the cache is cleared.
+ * This class is not thread-safe.
+ */
+final class DerivedKeyCache {
+
+  private final int capacity;
+  private final LinkedHashMap<Secret, byte[]> entries;
+
+  DerivedKeyCache(int capacity) {
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<Secret, byte[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Secret, byte[]> eldest) {
+        if (size() > DerivedKeyCache.this.capacity) {
+          zeroize(eldest);
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @param secret secret
+   * @return a copy of the cached derived key, or null if there's none
+   */
+  byte[] get(byte[] secret) {
+    byte[] derivedKey = entries.get(new Secret(secret));
+    return derivedKey != null ? derivedKey.clone() : null;
+  }
+
+  void put(byte[] secret, byte[] derivedKey) {
+    if (capacity > 0) {
+      byte[] previous = entries.put(new Secret(secret.clone()), derivedKey.clone());
+      if (previous != null) {
+        Arrays.fill(previous, (byte) 0);
+      }
+    }
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  void clear() {
+    for (Iterator<Map.Entry<Secret, byte[]>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+      zeroize(it.next());
+      it.remove();
+    }
+  }
+
+  private static void zeroize(Map.Entry<Secret, byte[]> entry) {
+    Arrays.fill(entry.getKey().value, (byte) 0);
+    Arrays.fill(entry.getValue(), (byte) 0);
+  }
+
+  private static final class Secret {
+    private final byte[] value;
+    private final int hash;
+
+    private Secret(byte[] value) {
+      this.value = value;
+      this.hash = Arrays.hashCode(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Secret && MessageDigest.isEqual(value, ((Secret) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+
+/**
+ * The discharge macaroons of a verification, hashed by the raw bytes of their identifiers,
+ * so the discharge of a third party caveat is found by its caveat id without decoding it.
+ * Identifiers are unique, another discharge macaroon with an identifier of a bound one isn't bound,
+ * but remembered as {@link #duplicate()}, which fails the verification.
+ * This class is not thread-safe.
+ */
+final class DischargeIndex {
+
+  private List<Macaroon> macaroons;
+  private Map<Identifier, Macaroon> byIdentifier;
+  private Macaroon duplicate;
+
+  /**
+   * @param dischargeMacaroons discharge macaroons
+   * @return a new index of the discharge macaroons
+   */
+  static DischargeIndex of(List<Macaroon> dischargeMacaroons) {
+    DischargeIndex index = new DischargeIndex();
+    if (!dischargeMacaroons.isEmpty()) {
+      index.byIdentifier = new HashMap<>();
+      for (Macaroon dischargeMacaroon : dischargeMacaroons) {
+        index.put(dischargeMacaroon);
+      }
+      // the given list isn't copied, thus it mustn't change while the index is used
+      index.macaroons = dischargeMacaroons;
+    }
+    return index;
+  }
+
+  /**
+   * Binds the discharge macaroon, binding the very same one again has no effect.
+   *
+   * @param dischargeMacaroon discharge macaroon
+   */
+  void add(Macaroon dischargeMacaroon) {
+    if (byIdentifier == null) {
+      byIdentifier = new HashMap<>();
+      macaroons = new ArrayList<>(3);
+    }
+    if (put(dischargeMacaroon)) {
+      macaroons.add(dischargeMacaroon);
+    }
+  }
+
+  /**
+   * @return true, if the discharge macaroon wasn't bound before
+   */
+  private boolean put(Macaroon dischargeMacaroon) {
+    Identifier identifier = new Identifier(dischargeMacaroon.identifier.getBytes(IDENTIFIER_CHARSET));
+    Macaroon bound = byIdentifier.putIfAbsent(identifier, dischargeMacaroon);
+    if (bound != null && duplicate == null && !bound.equals(dischargeMacaroon)) {
+      duplicate = dischargeMacaroon;
+    }
+    return bound == null;
+  }
+
+  /**
+   * @return the first discharge macaroon, whose identifier is the one of another bound discharge macaroon, or null if there's none
+   */
+  Macaroon duplicate() {
+    return duplicate;
+  }
+
+  /**
+   * @param identifier raw identifier, e.g. the caveat id of a third party caveat
+   * @return the discharge macaroon, or null if there's none
+   */
+  Macaroon get(byte[] identifier) {
+    return byIdentifier == null ? null : byIdentifier.get(new Identifier(identifier));
+  }
+
+  /**
+   * @return the bound discharge macaroons, in the order they were bound
+   */
+  List<Macaroon> macaroons() {
+    return macaroons == null ? Collections.<Macaroon>emptyList() : macaroons;
+  }
+
+  private static final class Identifier {
+    private final byte[] value;
+    private final int hash;
+
+    private Identifier(byte[] value) {
+      this.value = value;
+      this.hash = Arrays.hashCode(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Identifier && Arrays.equals(value, ((Identifier) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+
+/**
+ * An immutable hash set of exact caveats, which is looked up with the raw bytes of a caveat.
+ * Thus, no caveat has to be decoded to a String, while verifying.
+ * Uses open addressing with linear probing, the table is at most half full.
+ */
+final class ExactCaveatIndex {
+
+  private static final ExactCaveatIndex EMPTY = new ExactCaveatIndex(new byte[1][], new int[1], 0);
+
+  private final byte[][] table;
+  private final int[] hashes;
+  private final int size;
+
+  private ExactCaveatIndex(byte[][] table, int[] hashes, int size) {
+    this.table = table;
+    this.hashes = hashes;
+    this.size = size;
+  }
+
+  static ExactCaveatIndex of(Collection<String> predicates) {
+    if (predicates.isEmpty()) {
+      return EMPTY;
+    }
+    int capacity = Integer.highestOneBit(predicates.size() * 2 - 1) << 1;
+    byte[][] table = new byte[capacity][];
+    int[] hashes = new int[capacity];
+    int size = 0;
+    for (String predicate : predicates) {
+      byte[] value = predicate.getBytes(IDENTIFIER_CHARSET);
+      int hash = hash(value, 0, value.length);
+      int slot = indexOf(table, hashes, value, 0, value.length, hash);
+      if (table[slot] == null) {
+        table[slot] = value;
+        hashes[slot] = hash;
+        size++;
+      }
+    }
+    return new ExactCaveatIndex(table, hashes, size);
+  }
+
+  boolean contains(byte[] caveat) {
+    return contains(caveat, 0, caveat.length);
+  }
+
+  boolean contains(byte[] caveat, int offset, int length) {
+    if (size == 0) {
+      return false;
+    }
+    return table[indexOf(table, hashes, caveat, offset, length, hash(caveat, offset, length))] != null;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the slot, which contains the given value, or the empty slot, where it has to be inserted
+   */
+  private static int indexOf(byte[][] table, int[] hashes, byte[] value, int offset, int length, int hash) {
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (table[slot] != null) {
+      if (hashes[slot] == hash && Arrays.equals(table[slot], 0, table[slot].length, value, offset, offset + length)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(byte[] value, int offset, int length) {
+    int hash = 1;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      hash = 31 * hash + value[i];
+    }
+    // spread higher bits, because the table index only uses the lower ones
+    return hash ^ (hash >>> 16);
+  }
+}
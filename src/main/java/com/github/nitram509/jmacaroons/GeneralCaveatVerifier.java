@@ -23,4 +23,14 @@ public interface GeneralCaveatVerifier {
    * @return True, if this caveat is satisfies the applications requirements. False otherwise.
    */
   boolean verifyCaveat(String caveat);
+
+  /**
+   * Verifiers, which only ever satisfy caveats with a common prefix, should declare this prefix.
+   * Then, only caveats starting with this prefix are passed to {@link #verifyCaveat(String)}.
+   *
+   * @return the prefix of all caveats this verifier is able to satisfy, or null when every caveat has to be passed to this verifier
+   */
+  default String getCaveatPrefix() {
+    return null;
+  }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+
+/**
+ * Dispatches caveats to {@link com.github.nitram509.jmacaroons.GeneralCaveatVerifier}s
+ * by their declared {@link GeneralCaveatVerifier#getCaveatPrefix()}.
+ * The prefixes are stored in a byte-level trie, so each caveat is only passed to the verifiers,
+ * whose prefix matches the raw bytes of the caveat. Verifiers without prefix are stored in the root node,
+ * thus they are asked for every caveat.
+ * The registry is immutable, once built.
+ */
+final class GeneralCaveatVerifierRegistry {
+
+  private final Node root;
+
+  private GeneralCaveatVerifierRegistry(Node root) {
+    this.root = root;
+  }
+
+  static GeneralCaveatVerifierRegistry of(Collection<GeneralCaveatVerifier> verifiers) {
+    Node root = new Node();
+    for (GeneralCaveatVerifier verifier : verifiers) {
+      String prefix = verifier.getCaveatPrefix();
+      Node node = root;
+      if (prefix != null) {
+        for (byte b : prefix.getBytes(IDENTIFIER_CHARSET)) {
+          node = node.childOrCreate(b);
+        }
+      }
+      node.verifiers = Arrays.copyOf(node.verifiers, node.verifiers.length + 1);
+      node.verifiers[node.verifiers.length - 1] = verifier;
+    }
+    return new GeneralCaveatVerifierRegistry(root);
+  }
+
+  /**
+   * @param caveat caveat
+   * @return true, as soon as one candidate verifier satisfies the caveat
+   */
+  boolean verifies(CaveatPacket caveat) {
+    byte[] value = caveat.rawValue;
+    Node node = root;
+    int i = 0;
+    while (node != null) {
+      for (GeneralCaveatVerifier verifier : node.verifiers) {
+        if (verifier.verifyCaveat(caveat.getValueAsText())) {
+          return true;
+        }
+      }
+      if (i == value.length) {
+        break;
+      }
+      node = node.child(value[i++]);
+    }
+    return false;
+  }
+
+  private static final class Node {
+    private static final GeneralCaveatVerifier[] NO_VERIFIERS = new GeneralCaveatVerifier[0];
+
+    private byte[] keys = new byte[0];
+    private Node[] children = new Node[0];
+    private GeneralCaveatVerifier[] verifiers = NO_VERIFIERS;
+
+    private Node child(byte key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    private Node childOrCreate(byte key) {
+      Node child = child(key);
+      if (child == null) {
+        child = new Node();
+        keys = Arrays.copyOf(keys, keys.length + 1);
+        keys[keys.length - 1] = key;
+        children = Arrays.copyOf(children, children.length + 1);
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import com.github.nitram509.jmacaroons.crypto.HmacSha256;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_HASH_BYTES;
+
+/**
+ * Computes the chain of HMAC-SHA256 signatures of a macaroon.
+ * Every signature in a macaroon's chain is the key for the next one, thus the signatures are written
+ * into a buffer given by the caller, which may be the very same buffer as the key.
+ * There's one instance per thread, which holds the scratch state (HMAC instance and buffers), see {@link #get()}.
+ * An instance must not be shared between threads.
+ * <p>
+ * The HMAC backend follows the installed {@link CryptoProvider}, see {@link CryptoProviders}:
+ * the default provider uses {@link javax.crypto.Mac}, the {@link PureJavaHmacCryptoProvider} uses the
+ * allocation free {@link com.github.nitram509.jmacaroons.crypto.HmacSha256}, both with a precomputed key derivation.
+ * Any other provider gets all HMACs delegated.
+ * </p>
+ */
+abstract class HmacChain {
+
+  private static final ThreadLocal<HmacChain> CHAINS = ThreadLocal.withInitial(JcaHmacChain::new);
+
+  private static final ThreadLocal<HmacChain> PURE_JAVA_CHAINS = ThreadLocal.withInitial(PureJavaHmacChain::new);
+
+  private static final ThreadLocal<ProviderHmacChain> PROVIDER_CHAINS = new ThreadLocal<>();
+
+  private final byte[] hash2 = new byte[2 * MACAROON_HASH_BYTES];
+
+  /**
+   * @return the instance of the current thread
+   */
+  static HmacChain get() {
+    CryptoProvider provider = CryptoProviders.get();
+    if (CryptoProviders.isDefault(provider)) {
+      return CHAINS.get();
+    }
+    if (provider instanceof PureJavaHmacCryptoProvider) {
+      return PURE_JAVA_CHAINS.get();
+    }
+    ProviderHmacChain chain = PROVIDER_CHAINS.get();
+    if (chain == null || chain.provider != provider) {
+      chain = new ProviderHmacChain(provider);
+      PROVIDER_CHAINS.set(chain);
+    }
+    return chain;
+  }
+
+  /**
+   * @return the built-in instance of the current thread, regardless of the installed provider
+   */
+  static HmacChain builtIn() {
+    return CHAINS.get();
+  }
+
+  /**
+   * @return the pure Java instance of the current thread, regardless of the installed provider
+   */
+  static HmacChain pureJava() {
+    return PURE_JAVA_CHAINS.get();
+  }
+
+  /**
+   * out = HMAC(key, message)
+   *
+   * @param key     key
+   * @param message message
+   * @param out     buffer of {@link MacaroonsConstants#MACAROON_HASH_BYTES}, may be the same as key
+   */
+  void hmac(byte[] key, byte[] message, byte[] out) throws InvalidKeyException {
+    hmac(key, message, 0, message.length, out, 0);
+  }
+
+  /**
+   * out = HMAC(key, message[offset, offset+length])
+   *
+   * @param key     key
+   * @param message message
+   * @param offset  offset of message
+   * @param length  length of message
+   * @param out     buffer of {@link MacaroonsConstants#MACAROON_HASH_BYTES}, may be the same as key
+   */
+  void hmac(byte[] key, byte[] message, int offset, int length, byte[] out) throws InvalidKeyException {
+    hmac(key, message, offset, length, out, 0);
+  }
+
+  /**
+   * out = HMAC(key, HMAC(key, message1) || HMAC(key, message2))
+   *
+   * @param key      key
+   * @param message1 message1
+   * @param message2 message2
+   * @param out      buffer of {@link MacaroonsConstants#MACAROON_HASH_BYTES}, may be the same as key
+   */
+  void hash2(byte[] key, byte[] message1, byte[] message2, byte[] out) throws InvalidKeyException {
+    hmac(key, message1, 0, message1.length, hash2, 0);
+    hmac(key, message2, 0, message2.length, hash2, MACAROON_HASH_BYTES);
+    hmac(key, hash2, 0, hash2.length, out, 0);
+  }
+
+  /**
+   * out = HMAC("macaroons-key-generator", secret)
+   *
+   * @param secret secret
+   * @param out    buffer of {@link MacaroonsConstants#MACAROON_HASH_BYTES}
+   */
+  abstract void deriveKey(byte[] secret, byte[] out);
+
+  abstract void hmac(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset) throws InvalidKeyException;
+
+  private static byte[] magicKey() {
+    return CryptoTools.MACAROONS_MAGIC_KEY.getBytes(IDENTIFIER_CHARSET);
+  }
+
+  private static final class JcaHmacChain extends HmacChain {
+
+    private final Mac mac;
+    private final ChainKey chainKey = new ChainKey();
+    /**
+     * The key of the derivation never changes, thus it's initialized once,
+     * instead of computing the inner and outer padded key again for every derivation.
+     */
+    private final Mac derivation;
+
+    private JcaHmacChain() {
+      try {
+        this.mac = CryptoTools.createNewHmacInstance();
+        this.derivation = CryptoTools.createNewHmacInstance();
+        chainKey.value = magicKey();
+        this.derivation.init(chainKey);
+        chainKey.value = null;
+      } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+        throw new GeneralSecurityRuntimeException(e);
+      }
+    }
+
+    @Override
+    void deriveKey(byte[] secret, byte[] out) {
+      derivation.update(secret);
+      doFinal(derivation, out, 0);
+    }
+
+    @Override
+    void hmac(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset) throws InvalidKeyException {
+      chainKey.value = key;
+      try {
+        mac.init(chainKey);
+      } finally {
+        chainKey.value = null;
+      }
+      mac.update(message, offset, length);
+      doFinal(mac, out, outOffset);
+    }
+
+    private static void doFinal(Mac mac, byte[] out, int outOffset) {
+      try {
+        mac.doFinal(out, outOffset);
+      } catch (ShortBufferException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+  }
+
+  private static final class PureJavaHmacChain extends HmacChain {
+
+    private final HmacSha256 mac = new HmacSha256();
+    private final HmacSha256 derivation = new HmacSha256();
+
+    private PureJavaHmacChain() {
+      derivation.init(magicKey());
+    }
+
+    @Override
+    void deriveKey(byte[] secret, byte[] out) {
+      derivation.update(secret);
+      derivation.doFinal(out, 0);
+    }
+
+    @Override
+    void hmac(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset) {
+      mac.init(key);
+      mac.update(message, offset, length);
+      mac.doFinal(out, outOffset);
+    }
+  }
+
+  private static final class ProviderHmacChain extends HmacChain {
+
+    private final CryptoProvider provider;
+    private final byte[] magicKey = magicKey();
+
+    private ProviderHmacChain(CryptoProvider provider) {
+      this.provider = provider;
+    }
+
+    @Override
+    void deriveKey(byte[] secret, byte[] out) {
+      provider.hmacSha256(magicKey, secret, 0, secret.length, out, 0);
+    }
+
+    @Override
+    void hmac(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset) {
+      provider.hmacSha256(key, message, offset, length, out, outOffset);
+    }
+  }
+
+  /**
+   * A reusable key, so there's no SecretKeySpec needed per step.
+   * The JCA providers take a copy of {@link #getEncoded()} and may overwrite it,
+   * thus it's never the chain's buffer itself.
+   */
+  private static final class ChainKey implements SecretKey {
+    private byte[] value;
+
+    @Override
+    public String getAlgorithm() {
+      return "HmacSHA256";
+    }
+
+    @Override
+    public String getFormat() {
+      return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+      return value.clone();
+    }
+  }
+}
@@ -50,6 +50,12 @@ public class Macaroon implements Serializable {
 
   final byte[] signatureBytes;
 
+  /**
+   * Memoized serialized forms, created on first serialization.
+   * Concurrent serializations may compute the same form twice, which is harmless, because it's deterministic.
+   */
+  private transient volatile SerializedForms serializedForms;
+
   Macaroon(String location, String identifier, byte[] signature) {
     this(location, identifier, signature, new CaveatPacket[0]);
   }
@@ -116,6 +122,27 @@ public class Macaroon implements Serializable {
     return format.serialize(this);
   }
 
+  /**
+   * The exact length of {@link #serialize(MacaroonsSerializer)}, computed without serializing,
+   * e.g. to pre-size buffers or to enforce header limits.
+   *
+   * @param format the serialization format.
+   * @return number of chars of the serialized macaroon.
+   */
+  public int serializedSize(MacaroonsSerializer format) {
+    return format.serializedSize(this);
+  }
+
+  /**
+   * The exact length of {@link MacaroonsSerializer#serializeBinary(Macaroon)}, computed without serializing.
+   *
+   * @param format the serialization format.
+   * @return number of bytes of the binary serialized macaroon.
+   */
+  public int serializedBinarySize(MacaroonsSerializer format) {
+    return format.serializedBinarySize(this);
+  }
+
   /**
    * Deserializes a macaroon using the {@link MacaroonsSerializer#V1} format.
    *
@@ -194,6 +221,15 @@ public class Macaroon implements Serializable {
     return new MacaroonsBuilder(location, secretKey, identifier);
   }
 
+  SerializedForms serializedForms() {
+    SerializedForms forms = serializedForms;
+    return forms != null ? forms : SerializedForms.EMPTY;
+  }
+
+  void serializedForms(SerializedForms forms) {
+    serializedForms = forms;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
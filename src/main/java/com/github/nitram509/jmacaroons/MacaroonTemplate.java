@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.nitram509.jmacaroons.CryptoTools.generate_derived_key;
+import static com.github.nitram509.jmacaroons.CryptoTools.string_to_bytes;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_HASH_BYTES;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_MAX_CAVEATS;
+
+/**
+ * Mints many macaroons, which share location, secret and leading first party caveats, example:
+ * <pre>{@code
+ * MacaroonTemplate template = MacaroonTemplate.builder("http://www.example.org", secretKey)
+ *     .addCaveat("service = X")
+ *     .addCaveat("env = prod")
+ *     .build();
+ * Macaroon macaroon = template.mint(identifier, "account = 3735928559");
+ * }</pre>
+ * The key is derived and the shared caveats are encoded once, when the template is built.
+ * Per macaroon, the identifier and each caveat still need one HMAC, because every signature in the chain
+ * depends on the identifier. The caveat packets of the shared caveats are the same objects in every minted macaroon.
+ * This class is immutable and thread-safe.
+ */
+public final class MacaroonTemplate {
+
+  private final String location;
+  private final byte[] derivedKey;
+  private final CaveatPacket[] caveats;
+
+  private MacaroonTemplate(Builder builder) {
+    this.location = builder.location;
+    this.derivedKey = builder.derivedKey;
+    this.caveats = builder.caveats.toArray(new CaveatPacket[0]);
+  }
+
+  /**
+   * @param location  location
+   * @param secretKey secretKey this secret will be enhanced, in case it's shorter than {@link MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH}
+   * @return {@link Builder}
+   */
+  public static Builder builder(String location, String secretKey) {
+    return builder(location, string_to_bytes(secretKey));
+  }
+
+  /**
+   * @param location  location
+   * @param secretKey secretKey
+   * @return {@link Builder}
+   */
+  public static Builder builder(String location, byte[] secretKey) {
+    return new Builder(location, secretKey);
+  }
+
+  /**
+   * @param identifier identifier
+   * @param caveats    caveats, which are appended to the shared ones, null elements are ignored
+   * @return a new {@link Macaroon}, equal to one built by {@link MacaroonsBuilder} with the same caveats
+   * @throws IllegalStateException if there are more than {@link MacaroonsConstants#MACAROON_MAX_CAVEATS} caveats.
+   */
+  public Macaroon mint(String identifier, String... caveats) throws IllegalStateException, GeneralSecurityRuntimeException {
+    int count = this.caveats.length;
+    for (String caveat : caveats) {
+      if (caveat != null) {
+        count++;
+      }
+    }
+    if (count > MACAROON_MAX_CAVEATS) {
+      throw new IllegalStateException("Too many caveats. There are max. " + MACAROON_MAX_CAVEATS + " caveats allowed.");
+    }
+    CaveatPacket[] packets = new CaveatPacket[count];
+    System.arraycopy(this.caveats, 0, packets, 0, this.caveats.length);
+    int i = this.caveats.length;
+    for (String caveat : caveats) {
+      if (caveat != null) {
+        packets[i++] = new CaveatPacket(CaveatPacket.Type.cid, caveat.getBytes(IDENTIFIER_CHARSET));
+      }
+    }
+
+    byte[] signature = new byte[MACAROON_HASH_BYTES];
+    try {
+      HmacChain chain = HmacChain.get();
+      chain.hmac(derivedKey, identifier.getBytes(IDENTIFIER_CHARSET), signature);
+      for (CaveatPacket packet : packets) {
+        chain.hmac(signature, packet.rawValue, signature);
+      }
+    } catch (InvalidKeyException e) {
+      throw new GeneralSecurityRuntimeException(e);
+    }
+    return new Macaroon(location, identifier, signature, packets);
+  }
+
+  /**
+   * @param identifier identifier
+   * @return a {@link MacaroonsBuilder} of a macaroon with the shared caveats, e.g. to add third party caveats
+   */
+  public MacaroonsBuilder builder(String identifier) throws GeneralSecurityRuntimeException {
+    return Macaroon.builder(mint(identifier));
+  }
+
+  public static final class Builder {
+
+    private final String location;
+    private final byte[] derivedKey;
+    private final List<CaveatPacket> caveats = new ArrayList<>();
+
+    private Builder(String location, byte[] secretKey) {
+      this.location = location;
+      try {
+        this.derivedKey = generate_derived_key(secretKey);
+      } catch (InvalidKeyException | NoSuchAlgorithmException e) {
+        throw new GeneralSecurityRuntimeException(e);
+      }
+    }
+
+    /**
+     * @param caveat first party caveat, which is added to every minted macaroon
+     * @return this {@link Builder}
+     */
+    public Builder addCaveat(String caveat) {
+      if (caveat != null) {
+        caveats.add(new CaveatPacket(CaveatPacket.Type.cid, caveat.getBytes(IDENTIFIER_CHARSET)));
+      }
+      return this;
+    }
+
+    public MacaroonTemplate build() {
+      return new MacaroonTemplate(this);
+    }
+  }
+}
@@ -19,13 +19,36 @@ package com.github.nitram509.jmacaroons;
 public class MacaroonValidationException extends RuntimeException {
 
   private final Macaroon macaroon;
+  private final VerificationResult result;
 
   public MacaroonValidationException(String message, Macaroon macaroon) {
     super(message);
     this.macaroon = macaroon;
+    this.result = null;
+  }
+
+  /**
+   * @param result failed result, the message is built from it, when it's asked for
+   */
+  public MacaroonValidationException(VerificationResult result) {
+    super();
+    this.macaroon = result.getMacaroon();
+    this.result = result;
+  }
+
+  @Override
+  public String getMessage() {
+    return result != null ? result.getMessage() : super.getMessage();
   }
 
   public Macaroon getMacaroon() {
     return macaroon;
   }
+
+  /**
+   * @return the failed result, null if this exception wasn't created from one
+   */
+  public VerificationResult getVerificationResult() {
+    return result;
+  }
 }
@@ -16,12 +16,13 @@
 
 package com.github.nitram509.jmacaroons;
 
-import com.github.nitram509.jmacaroons.util.ArrayTools;
-
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
 
 import static com.github.nitram509.jmacaroons.CryptoTools.*;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_HASH_BYTES;
 import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_MAX_CAVEATS;
 import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_MAX_STRLEN;
 
@@ -33,10 +34,24 @@ import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_MAX_ST
  * String identifier = "we used our secret key";
  * Macaroon macaroon = Macaroon.create(location, secretKey, identifier);
  * }</pre>
+ * Caveats are appended to a growable buffer and the signature is updated in place,
+ * the immutable {@link Macaroon} is only created by {@link #build()}.
  */
 public class MacaroonsBuilder {
 
+  /**
+   * The last built (or given) macaroon, null if there are changes since.
+   */
   private Macaroon macaroon;
+  private String location;
+  private String identifier;
+  /**
+   * The signature, it's only written in place, if it's not shared with a built macaroon.
+   */
+  private byte[] signature;
+  private boolean signatureShared;
+  private CaveatPacket[] caveatPackets;
+  private int caveatCount;
 
   /**
    * @deprecated use {@link Macaroon#builder(String, String, String)}
@@ -48,7 +63,7 @@ public class MacaroonsBuilder {
   @Deprecated
   public MacaroonsBuilder(String location, String secretKey, String identifier) throws GeneralSecurityRuntimeException {
     try {
-      this.macaroon = new Macaroon(location, generate_derived_key(string_to_bytes(secretKey)), identifier);
+      init(new Macaroon(location, generate_derived_key(string_to_bytes(secretKey)), identifier));
     }
     catch (InvalidKeyException | NoSuchAlgorithmException e) {
       throw new GeneralSecurityRuntimeException(e);
@@ -65,7 +80,7 @@ public class MacaroonsBuilder {
   @Deprecated
   public MacaroonsBuilder(String location, byte[] secretKey, String identifier) throws GeneralSecurityRuntimeException {
     try {
-      this.macaroon = new Macaroon(location, generate_derived_key(secretKey), identifier);
+      init(new Macaroon(location, generate_derived_key(secretKey), identifier));
     }
     catch (InvalidKeyException | NoSuchAlgorithmException e) {
       throw new GeneralSecurityRuntimeException(e);
@@ -79,7 +94,20 @@ public class MacaroonsBuilder {
   @Deprecated
   public MacaroonsBuilder(Macaroon macaroon) {
     assert macaroon != null;
+    init(macaroon);
+  }
+
+  /**
+   * The caveats and the signature of the macaroon are taken as they are, they're copied on the first change.
+   */
+  private void init(Macaroon macaroon) {
     this.macaroon = macaroon;
+    this.location = macaroon.location;
+    this.identifier = macaroon.identifier;
+    this.signature = macaroon.signatureBytes;
+    this.signatureShared = true;
+    this.caveatPackets = macaroon.caveatPackets;
+    this.caveatCount = macaroon.caveatPackets.length;
   }
 
   /**
@@ -158,6 +186,12 @@ public class MacaroonsBuilder {
    * @return a {@link com.github.nitram509.jmacaroons.Macaroon}
    */
   public Macaroon build() {
+    if (macaroon == null) {
+      // a full buffer is never written again, the next append copies it
+      CaveatPacket[] caveats = caveatCount == caveatPackets.length ? caveatPackets : Arrays.copyOf(caveatPackets, caveatCount);
+      macaroon = new Macaroon(location, identifier, signature, caveats);
+      signatureShared = true;
+    }
     return macaroon;
   }
 
@@ -169,22 +203,45 @@ public class MacaroonsBuilder {
    */
   public MacaroonsBuilder addCaveat(String caveat) throws IllegalStateException, GeneralSecurityRuntimeException {
     if (caveat != null) {
-      byte[] caveatBytes = caveat.getBytes(MacaroonsConstants.IDENTIFIER_CHARSET);
-      assert caveatBytes.length < MACAROON_MAX_STRLEN;
-      if (this.macaroon.caveatPackets.length + 1 > MACAROON_MAX_CAVEATS) {
-        throw new IllegalStateException("Too many caveats. There are max. " + MACAROON_MAX_CAVEATS + " caveats allowed.");
-      }
-      try {
-        byte[] signature = macaroon_hmac(macaroon.signatureBytes, caveatBytes);
-        CaveatPacket[] caveatsAppended = ArrayTools.appendToArray(macaroon.caveatPackets, new CaveatPacket(CaveatPacket.Type.cid, caveatBytes));
-        this.macaroon = new Macaroon(macaroon.location, macaroon.identifier, signature, caveatsAppended);
-      } catch (InvalidKeyException | NoSuchAlgorithmException e) {
-        throw new GeneralSecurityRuntimeException(e);
+      checkCaveatCount(1);
+      ensureCapacity(1);
+      appendCaveat(caveat);
+    }
+    return this;
+  }
+
+  /**
+   * Same as calling {@link #addCaveat(String)} for each caveat, but the buffer is grown once.
+   *
+   * @param caveats caveats, null elements are ignored
+   * @return this {@link com.github.nitram509.jmacaroons.MacaroonsBuilder}
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   * @throws IllegalStateException                                           if there would be more than {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_MAX_CAVEATS} caveats, no caveat is added then.
+   */
+  public MacaroonsBuilder addCaveats(Collection<String> caveats) throws IllegalStateException, GeneralSecurityRuntimeException {
+    checkCaveatCount(caveats.size());
+    ensureCapacity(caveats.size());
+    for (String caveat : caveats) {
+      if (caveat != null) {
+        appendCaveat(caveat);
       }
     }
     return this;
   }
 
+  private void appendCaveat(String caveat) {
+    byte[] caveatBytes = caveat.getBytes(MacaroonsConstants.IDENTIFIER_CHARSET);
+    assert caveatBytes.length < MACAROON_MAX_STRLEN;
+    try {
+      byte[] out = signatureShared ? new byte[MACAROON_HASH_BYTES] : signature;
+      HmacChain.get().hmac(signature, caveatBytes, out);
+      updateSignature(out);
+    } catch (InvalidKeyException e) {
+      throw new GeneralSecurityRuntimeException(e);
+    }
+    caveatPackets[caveatCount++] = new CaveatPacket(CaveatPacket.Type.cid, caveatBytes);
+  }
+
   /**
    * @deprecated use {@link #addCaveat(String)}
    * @param caveat caveat
@@ -209,19 +266,15 @@ public class MacaroonsBuilder {
     assert location.length() < MACAROON_MAX_STRLEN;
     assert identifier.length() < MACAROON_MAX_STRLEN;
 
-    if (this.macaroon.caveatPackets.length + 1 > MACAROON_MAX_CAVEATS) {
-      throw new IllegalStateException("Too many caveats. There are max. " + MACAROON_MAX_CAVEATS + " caveats allowed.");
-    }
+    checkCaveatCount(1);
     try {
       byte[] derived_key = generate_derived_key(string_to_bytes(secret));
-      ThirdPartyPacket thirdPartyPacket = macaroon_add_third_party_caveat_raw(macaroon.signatureBytes, derived_key, identifier);
-      byte[] hash = thirdPartyPacket.signature;
-      CaveatPacket[] caveatsExtended = ArrayTools.appendToArray(macaroon.caveatPackets,
-          new CaveatPacket(CaveatPacket.Type.cid, identifier),
-          new CaveatPacket(CaveatPacket.Type.vid, thirdPartyPacket.vid_data),
-          new CaveatPacket(CaveatPacket.Type.cl, location)
-      );
-      this.macaroon = new Macaroon(macaroon.location, macaroon.identifier, hash, caveatsExtended);
+      ThirdPartyPacket thirdPartyPacket = macaroon_add_third_party_caveat_raw(signature, derived_key, identifier);
+      ensureCapacity(3);
+      caveatPackets[caveatCount++] = new CaveatPacket(CaveatPacket.Type.cid, identifier);
+      caveatPackets[caveatCount++] = new CaveatPacket(CaveatPacket.Type.vid, thirdPartyPacket.vid_data);
+      caveatPackets[caveatCount++] = new CaveatPacket(CaveatPacket.Type.cl, location);
+      updateSignature(thirdPartyPacket.signature);
     } catch (InvalidKeyException | NoSuchAlgorithmException e) {
       throw new GeneralSecurityRuntimeException(e);
     }
@@ -249,10 +302,11 @@ public class MacaroonsBuilder {
    */
   public MacaroonsBuilder prepareForRequest(Macaroon other) throws GeneralSecurityRuntimeException {
     assert other.signatureBytes.length > 0;
-    assert macaroon.signatureBytes.length > 0;
+    assert signature.length > 0;
     try {
-      byte[] hash = macaroon_bind(macaroon.signatureBytes, other.signatureBytes);
-      this.macaroon = new Macaroon(other.location, other.identifier, hash, other.caveatPackets);
+      byte[] hash = macaroon_bind(signature, other.signatureBytes);
+      init(other);
+      updateSignature(hash);
       return this;
     } catch (InvalidKeyException | NoSuchAlgorithmException e) {
       throw new GeneralSecurityRuntimeException(e);
@@ -270,4 +324,31 @@ public class MacaroonsBuilder {
     return prepareForRequest(macaroon);
   }
 
+  private void checkCaveatCount(int added) {
+    if (caveatCount + added > MACAROON_MAX_CAVEATS) {
+      throw new IllegalStateException("Too many caveats. There are max. " + MACAROON_MAX_CAVEATS + " caveats allowed.");
+    }
+  }
+
+  /**
+   * Grows the buffer by at least half, so appending n caveats one by one copies O(n) packets in total.
+   * A buffer taken from or given to a macaroon is always full, thus it's copied before the next append.
+   */
+  private void ensureCapacity(int added) {
+    int required = caveatCount + added;
+    if (required > caveatPackets.length) {
+      int capacity = Math.max(required, caveatPackets.length + (caveatPackets.length >> 1) + 4);
+      caveatPackets = Arrays.copyOf(caveatPackets, capacity);
+    }
+  }
+
+  /**
+   * @param newSignature the new signature, which is owned by this builder from now on
+   */
+  private void updateSignature(byte[] newSignature) {
+    this.signature = newSignature;
+    this.signatureShared = false;
+    this.macaroon = null;
+  }
+
 }
@@ -16,6 +16,15 @@
 
 package com.github.nitram509.jmacaroons;
 
+import com.github.nitram509.jmacaroons.util.Base64;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
 /**
  * A format for serializing a macaroon to or from a string representation. The supported formats are:
  * <ul>
@@ -42,6 +51,28 @@ public interface MacaroonsSerializer {
    */
   String serialize(Macaroon macaroon);
 
+  /**
+   * Writes the string form of a macaroon to the Appendable, e.g. a StringBuilder or Writer.
+   *
+   * @param macaroon the macaroon to serialize.
+   * @param out      destination of the string form.
+   * @throws IOException if the Appendable does so.
+   */
+  default void serialize(Macaroon macaroon, Appendable out) throws IOException {
+    out.append(serialize(macaroon));
+  }
+
+  /**
+   * Writes the string form of a macaroon to the stream, as US-ASCII bytes.
+   *
+   * @param macaroon the macaroon to serialize.
+   * @param out      destination of the string form.
+   * @throws IOException if the stream does so.
+   */
+  default void serialize(Macaroon macaroon, OutputStream out) throws IOException {
+    out.write(serialize(macaroon).getBytes(US_ASCII));
+  }
+
   /**
    * Deserializes a macaroon from a string. Note that this method doesn't validate the macaroon signature or
    * caveats, for which you should use a {@link MacaroonsVerifier}.
@@ -51,4 +82,98 @@ public interface MacaroonsSerializer {
    * @throws NotDeSerializableException if the macaroon can't be deserialized.
    */
   Macaroon deserialize(String serialized);
+
+  /**
+   * @param macaroon the macaroon.
+   * @return the exact length of {@link #serialize(Macaroon)}.
+   */
+  default int serializedSize(Macaroon macaroon) {
+    return serialize(macaroon).length();
+  }
+
+  /**
+   * @param macaroon the macaroon.
+   * @return the exact length of {@link #serializeBinary(Macaroon)}.
+   */
+  default int serializedBinarySize(Macaroon macaroon) {
+    return serializeBinary(macaroon).length;
+  }
+
+  /**
+   * Serializes a macaroon into its binary form, that's the string form without base64 encoding.
+   * Use it to store macaroons in binary columns or to send them in binary protocol fields.
+   * By default, the string form of {@link #serialize(Macaroon)} is base64 decoded,
+   * formats with a binary encoding should override it.
+   *
+   * @param macaroon the macaroon to serialize.
+   * @return the binary form of the macaroon.
+   */
+  default byte[] serializeBinary(Macaroon macaroon) {
+    return Base64.decode(serialize(macaroon));
+  }
+
+  /**
+   * Writes the binary form of a macaroon to the stream, see {@link #serializeBinary(Macaroon)}.
+   *
+   * @param macaroon the macaroon to serialize.
+   * @param out      destination of the binary form.
+   * @throws IOException if the stream does so.
+   */
+  default void serializeBinary(Macaroon macaroon, OutputStream out) throws IOException {
+    out.write(serializeBinary(macaroon));
+  }
+
+  /**
+   * Writes the binary form of a macaroon at the buffer's position, see {@link #serializeBinary(Macaroon)}.
+   * If there's not enough space remaining, nothing is written.
+   *
+   * @param macaroon the macaroon to serialize.
+   * @param out      destination of the binary form.
+   * @throws java.nio.BufferOverflowException if there's not enough space remaining in the buffer.
+   */
+  default void serializeBinary(Macaroon macaroon, ByteBuffer out) {
+    out.put(serializeBinary(macaroon));
+  }
+
+  /**
+   * Writes the binary form of a macaroon completely to the channel, see {@link #serializeBinary(Macaroon)}.
+   *
+   * @param macaroon the macaroon to serialize.
+   * @param out      destination of the binary form.
+   * @throws IOException if the channel does so.
+   */
+  default void serializeBinary(Macaroon macaroon, WritableByteChannel out) throws IOException {
+    ByteBuffer binary = ByteBuffer.wrap(serializeBinary(macaroon));
+    while (binary.hasRemaining()) {
+      out.write(binary);
+    }
+  }
+
+  /**
+   * Deserializes a macaroon from its binary form, see {@link #serializeBinary(Macaroon)}.
+   * Note that this method doesn't validate the macaroon signature or caveats.
+   * By default, the binary form is base64 encoded and passed to {@link #deserialize(String)}.
+   *
+   * @param serialized the binary form.
+   * @return the deserialized macaroon.
+   * @throws NotDeSerializableException if the macaroon can't be deserialized.
+   */
+  default Macaroon deserializeBinary(byte[] serialized) {
+    return deserialize(new String(Base64.encodeUrlSafe(serialized, false)));
+  }
+
+  /**
+   * Deserializes a macaroon from the remaining bytes of the buffer, see {@link #serializeBinary(Macaroon)}.
+   * The buffer's position is moved to its limit.
+   * Note that this method doesn't validate the macaroon signature or caveats.
+   *
+   * @param serialized the binary form.
+   * @return the deserialized macaroon.
+   * @throws NotDeSerializableException if the macaroon can't be deserialized.
+   */
+  default Macaroon deserializeBinary(ByteBuffer serialized) {
+    byte[] binary = new byte[serialized.remaining()];
+    serialized.get(binary);
+    return deserializeBinary(binary);
+  }
 }
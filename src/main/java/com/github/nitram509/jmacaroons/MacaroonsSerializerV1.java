@@ -31,15 +31,16 @@ import static com.github.nitram509.jmacaroons.MacaroonsConstants.PACKET_PREFIX_L
 import static com.github.nitram509.jmacaroons.MacaroonsConstants.SIGNATURE;
 import static com.github.nitram509.jmacaroons.MacaroonsConstants.SIGNATURE_BYTES;
 import static com.github.nitram509.jmacaroons.MacaroonsConstants.VID_BYTES;
-import static com.github.nitram509.jmacaroons.util.ArrayTools.flattenByteArray;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.github.nitram509.jmacaroons.CaveatPacket.Type;
 import com.github.nitram509.jmacaroons.util.Base64;
 
-final class MacaroonsSerializerV1 implements MacaroonsSerializer {
+final class MacaroonsSerializerV1 extends AbstractMacaroonsSerializer {
     private static final byte[] HEX = new byte[]{
             '0', '1', '2', '3',
             '4', '5', '6', '7',
@@ -56,21 +57,39 @@ final class MacaroonsSerializerV1 implements MacaroonsSerializer {
             0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
 
     @Override
-    public String serialize(Macaroon macaroon) {
-        List<byte[]> packets = new ArrayList<>( 3 + macaroon.caveatPackets.length );
-        packets.add(serialize_packet(Type.location, macaroon.location));
-        packets.add(serialize_packet(Type.identifier, macaroon.identifier));
+    int version() {
+        return 1;
+    }
+
+    @Override
+    int computeBinarySize(Macaroon macaroon) {
+        int size = packet_size(Type.location, utf8Length(macaroon.location))
+                + packet_size(Type.identifier, utf8Length(macaroon.identifier));
+        for (CaveatPacket caveatPacket : macaroon.caveatPackets) {
+            size += packet_size(caveatPacket.type, caveatPacket.rawValue.length);
+        }
+        return size + packet_size(Type.signature, macaroon.signatureBytes.length);
+    }
+
+    @Override
+    void writeBinary(Macaroon macaroon, ByteBuffer out) {
+        write_packet(out, Type.location, macaroon.location.getBytes(IDENTIFIER_CHARSET));
+        write_packet(out, Type.identifier, macaroon.identifier.getBytes(IDENTIFIER_CHARSET));
         for (CaveatPacket caveatPacket : macaroon.caveatPackets) {
-            packets.add(serialize_packet(caveatPacket.type, caveatPacket.rawValue));
+            write_packet(out, caveatPacket.type, caveatPacket.rawValue);
         }
-        packets.add(serialize_packet(Type.signature, macaroon.signatureBytes));
-        return Base64.encodeUrlSafeToString(flattenByteArray(packets));
+        write_packet(out, Type.signature, macaroon.signatureBytes);
     }
 
     @Override
     public Macaroon deserialize(String serializedMacaroon) {
         assert serializedMacaroon != null;
-        byte[] bytes = Base64.decode(serializedMacaroon);
+        return deserializeBinary(Base64.decode(serializedMacaroon));
+    }
+
+    @Override
+    public Macaroon deserializeBinary(byte[] bytes) {
+        assert bytes != null;
         int minLength = MACAROON_HASH_BYTES + KEY_VALUE_SEPARATOR_LEN + SIGNATURE.length();
         if (bytes.length < minLength) {
             throw new NotDeSerializableException("Couldn't deserialize macaroon. Not enough bytes for signature found. There have to be at least " + minLength + " bytes");
@@ -78,41 +97,24 @@ final class MacaroonsSerializerV1 implements MacaroonsSerializer {
         return deserializeStream(new StatefulPacketReader(bytes));
     }
 
-    private static byte[] serialize_packet(Type type, String data) {
-        return serialize_packet(type, data.getBytes(IDENTIFIER_CHARSET));
+    private static int packet_size(Type type, int dataLength) {
+        return PACKET_PREFIX_LENGTH + type.name().length() + KEY_VALUE_SEPARATOR_LEN + dataLength + LINE_SEPARATOR_LEN;
     }
 
-    private static byte[] serialize_packet(Type type, byte[] data) {
+    private static void write_packet(ByteBuffer out, Type type, byte[] data) {
         String typname = type.name();
-        int packet_len = PACKET_PREFIX_LENGTH + typname.length() + KEY_VALUE_SEPARATOR_LEN + data.length + LINE_SEPARATOR_LEN;
-        byte[] packet = new byte[packet_len];
-        int offset = 0;
-
-        System.arraycopy(packet_header(packet_len), 0, packet, offset, PACKET_PREFIX_LENGTH);
-        offset += PACKET_PREFIX_LENGTH;
-
-        System.arraycopy(typname.getBytes(), 0, packet, offset, typname.length());
-        offset += typname.length();
-
-        packet[offset] = KEY_VALUE_SEPARATOR;
-        offset += KEY_VALUE_SEPARATOR_LEN;
-
-        System.arraycopy(data, 0, packet, offset, data.length);
-        offset += data.length;
-
-        packet[offset] = LINE_SEPARATOR;
-        return packet;
-    }
-
-    private static byte[] packet_header(int size) {
-        assert (size < 65536);
-        size = (size & 0xffff);
-        byte[] packet = new byte[PACKET_PREFIX_LENGTH];
-        packet[0] = HEX[(size >> 12) & 15];
-        packet[1] = HEX[(size >> 8) & 15];
-        packet[2] = HEX[(size >> 4) & 15];
-        packet[3] = HEX[(size) & 15];
-        return packet;
+        int packet_len = packet_size(type, data.length);
+        assert (packet_len < 65536);
+        out.put(HEX[(packet_len >> 12) & 15]);
+        out.put(HEX[(packet_len >> 8) & 15]);
+        out.put(HEX[(packet_len >> 4) & 15]);
+        out.put(HEX[(packet_len) & 15]);
+        for (int i = 0; i < typname.length(); i++) {
+            out.put((byte) typname.charAt(i));
+        }
+        out.put((byte) KEY_VALUE_SEPARATOR);
+        out.put(data);
+        out.put((byte) LINE_SEPARATOR);
     }
 
 
@@ -128,11 +130,9 @@ final class MacaroonsSerializerV1 implements MacaroonsSerializer {
             } else if (bytesStartWith(packet.data, IDENTIFIER_BYTES)) {
                 identifier = parsePacket(packet, IDENTIFIER_BYTES);
             } else if (bytesStartWith(packet.data, CID_BYTES)) {
-                String s = parsePacket(packet, CID_BYTES);
-                caveats.add(new CaveatPacket(Type.cid, s));
+                caveats.add(new CaveatPacket(Type.cid, parseValue(packet, CID_BYTES)));
             } else if (bytesStartWith(packet.data, CL_BYTES)) {
-                String s = parsePacket(packet, CL_BYTES);
-                caveats.add(new CaveatPacket(Type.cl, s));
+                caveats.add(new CaveatPacket(Type.cl, parseValue(packet, CL_BYTES)));
             } else if (bytesStartWith(packet.data, VID_BYTES)) {
                 byte[] raw = parseRawPacket(packet, VID_BYTES);
                 caveats.add(new CaveatPacket(Type.vid, raw));
@@ -153,9 +153,21 @@ final class MacaroonsSerializerV1 implements MacaroonsSerializer {
 
     private static String parsePacket(Packet packet, byte[] header) {
         int headerLen = header.length + KEY_VALUE_SEPARATOR_LEN;
+        return new String(packet.data, headerLen, valueLength(packet, headerLen), IDENTIFIER_CHARSET);
+    }
+
+    /**
+     * Same as {@link #parsePacket(Packet, byte[])}, but copies the bytes, without decoding and encoding them again.
+     */
+    private static byte[] parseValue(Packet packet, byte[] header) {
+        int headerLen = header.length + KEY_VALUE_SEPARATOR_LEN;
+        return Arrays.copyOfRange(packet.data, headerLen, headerLen + valueLength(packet, headerLen));
+    }
+
+    private static int valueLength(Packet packet, int headerLen) {
         int len = packet.data.length - headerLen;
         if (packet.data[headerLen + len - 1] == LINE_SEPARATOR) len--;
-        return new String(packet.data, headerLen, len, IDENTIFIER_CHARSET);
+        return len;
     }
 
     private static byte[] parseRawPacket(Packet packet, byte[] header) {
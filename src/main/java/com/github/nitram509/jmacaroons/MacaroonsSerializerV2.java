@@ -16,200 +16,274 @@
 
 package com.github.nitram509.jmacaroons;
 
-import static java.nio.charset.StandardCharsets.US_ASCII;
-
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
-import java.util.Optional;
 
 import com.github.nitram509.jmacaroons.CaveatPacket.Type;
 
-final class MacaroonsSerializerV2 implements MacaroonsSerializer {
-    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+final class MacaroonsSerializerV2 extends AbstractMacaroonsSerializer {
     private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
 
-    private static final byte LOCATION = 1;
-    private static final byte IDENTIFIER = 2;
-    private static final byte VERIFIER_ID = 4;
-    private static final byte SIGNATURE = 6;
-    private static final byte END_OF_SECTION = 0;
+    static final byte LOCATION = 1;
+    static final byte IDENTIFIER = 2;
+    static final byte VERIFIER_ID = 4;
+    static final byte SIGNATURE = 6;
+    static final byte END_OF_SECTION = 0;
 
     @Override
-    public String serialize(Macaroon macaroon) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (OutputStream out = BASE64_ENCODER.wrap(baos)) {
-            out.write(2); // Version
-            writeOptionalField(out, LOCATION, macaroon.location);
-            writeField(out, IDENTIFIER, macaroon.identifier.getBytes(MacaroonsConstants.IDENTIFIER_CHARSET));
-            out.write(END_OF_SECTION);
-
-            Caveat caveat = new Caveat();
-            for (CaveatPacket packet : macaroon.caveatPackets) {
-                if (packet.type == Type.cid) {
-                    writeCaveat(out, caveat);
-                    caveat = new Caveat();
-                }
+    int version() {
+        return 2;
+    }
+
+    @Override
+    int computeBinarySize(Macaroon macaroon) {
+        int size = 1; // Version
+        if (macaroon.location != null) {
+            size += fieldSize(utf8Length(macaroon.location));
+        }
+        size += fieldSize(utf8Length(macaroon.identifier));
+        size++; // END_OF_SECTION
+        CaveatPacket[] packets = macaroon.caveatPackets;
+        for (int i = 0; i < packets.length; i++) {
+            rejectIfNotCaveatStart(packets[i]);
+            size += fieldSize(packets[i].rawValue.length);
+            for (; i + 1 < packets.length && packets[i + 1].type != Type.cid; i++) {
+                size += fieldSize(packets[i + 1].rawValue.length);
+            }
+            size++; // END_OF_SECTION
+        }
+        size++; // END_OF_SECTION
+        size += fieldSize(macaroon.signatureBytes.length);
+        return size;
+    }
+
+    @Override
+    void writeBinary(Macaroon macaroon, ByteBuffer out) {
+        out.put((byte) 2); // Version
+        if (macaroon.location != null) {
+            writeField(out, LOCATION, macaroon.location.getBytes(MacaroonsConstants.IDENTIFIER_CHARSET));
+        }
+        writeField(out, IDENTIFIER, macaroon.identifier.getBytes(MacaroonsConstants.IDENTIFIER_CHARSET));
+        out.put(END_OF_SECTION);
+
+        CaveatPacket[] packets = macaroon.caveatPackets;
+        for (int i = 0; i < packets.length; i++) {
+            rejectIfNotCaveatStart(packets[i]);
+            byte[] id = packets[i].rawValue;
+            byte[] loc = null;
+            byte[] vid = null;
+            for (; i + 1 < packets.length && packets[i + 1].type != Type.cid; i++) {
+                CaveatPacket packet = packets[i + 1];
                 switch (packet.type) {
-                case cid:
-                    caveat.id = packet.rawValue;
-                    break;
                 case cl:
-                    caveat.loc = packet.rawValue;
+                    loc = packet.rawValue;
                     break;
                 case vid:
-                    caveat.vid = packet.rawValue;
+                    vid = packet.rawValue;
                     break;
                 default:
                     throw new IllegalArgumentException("unexpected packet type: " + packet.type);
                 }
             }
-            writeCaveat(out, caveat);
+            if (loc != null) {
+                writeField(out, LOCATION, loc);
+            }
+            writeField(out, IDENTIFIER, id);
+            if (vid != null) {
+                writeField(out, VERIFIER_ID, vid);
+            }
+            out.put(END_OF_SECTION);
+        }
 
-            out.write(END_OF_SECTION);
-            writeField(out, SIGNATURE, macaroon.signatureBytes);
+        out.put(END_OF_SECTION);
+        writeField(out, SIGNATURE, macaroon.signatureBytes);
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to serialize macaroon", e);
+    @Override
+    public Macaroon deserialize(String data) {
+        byte[] binary;
+        try {
+            binary = BASE64_DECODER.decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new NotDeSerializableException("Unable to decode macaroon", e);
         }
+        return deserialize(binary, 0, binary.length);
+    }
 
-        return new String(baos.toByteArray(), US_ASCII);
+    @Override
+    public Macaroon deserializeBinary(byte[] serialized) {
+        return deserialize(serialized, 0, serialized.length);
     }
 
     @Override
-    public Macaroon deserialize(String data) {
-        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
-                BASE64_DECODER.wrap(new ByteArrayInputStream(data.getBytes(US_ASCII)))))) {
+    public Macaroon deserializeBinary(ByteBuffer serialized) {
+        if (!serialized.hasArray()) {
+            return super.deserializeBinary(serialized);
+        }
+        Macaroon macaroon = deserialize(serialized.array(), serialized.arrayOffset() + serialized.position(), serialized.remaining());
+        serialized.position(serialized.limit());
+        return macaroon;
+    }
 
-            rejectIfFalse(in.readUnsignedByte() == 2, "Incorrect version");
+    /**
+     * Parses the binary V2 format in a single pass, by index arithmetic over the given array.
+     * Only the retained fields are copied out of the array.
+     */
+    Macaroon deserialize(byte[] data, int offset, int length) {
+        Parser in = new Parser(data, offset, length);
 
-            String location = readOptionalString(in, LOCATION).orElse(null);
-            String identifier = readStringField(in, IDENTIFIER);
-            rejectIfFalse(in.readUnsignedByte() == END_OF_SECTION, "Invalid macaroon");
+        rejectIfFalse(in.readUnsignedByte() == 2, "Incorrect version");
 
-            List<CaveatPacket> caveats = new ArrayList<>();
-            while (peek(in) != END_OF_SECTION) {
-                String caveatLocation = readOptionalString(in, LOCATION).orElse(null);
-                byte[] caveatIdentifier = readField(in, IDENTIFIER);
-                byte[] verifierId = readOptionalField(in, VERIFIER_ID).orElse(null);
+        String location = in.peek() == LOCATION ? in.readStringField(LOCATION) : null;
+        String identifier = in.readStringField(IDENTIFIER);
+        rejectIfFalse(in.readUnsignedByte() == END_OF_SECTION, "Invalid macaroon");
 
-                caveats.add(new CaveatPacket(Type.cid, caveatIdentifier));
-                if (verifierId != null) {
-                    caveats.add(new CaveatPacket(Type.vid, verifierId));
-                }
-                if (caveatLocation != null) {
-                    caveats.add(new CaveatPacket(Type.cl, caveatLocation));
-                }
+        List<CaveatPacket> caveats = new ArrayList<>();
+        while (in.peek() != END_OF_SECTION) {
+            byte[] caveatLocation = in.peek() == LOCATION ? in.readField(LOCATION) : null;
+            byte[] caveatIdentifier = in.readField(IDENTIFIER);
+            byte[] verifierId = in.peek() == VERIFIER_ID ? in.readField(VERIFIER_ID) : null;
 
-                rejectIfFalse(in.readUnsignedByte() == END_OF_SECTION, "Invalid macaroon");
+            caveats.add(new CaveatPacket(Type.cid, caveatIdentifier));
+            if (verifierId != null) {
+                caveats.add(new CaveatPacket(Type.vid, verifierId));
+            }
+            if (caveatLocation != null) {
+                caveats.add(new CaveatPacket(Type.cl, caveatLocation));
             }
 
             rejectIfFalse(in.readUnsignedByte() == END_OF_SECTION, "Invalid macaroon");
-            byte[] tag = readField(in, SIGNATURE);
-            rejectIfFalse(tag.length == 32, "Invalid authentication tag");
-
-            return new Macaroon(location, identifier, tag, caveats.toArray(new CaveatPacket[0]));
-        } catch (IOException e) {
-            throw new NotDeSerializableException("Unable to decode macaroon", e);
-        } catch (IllegalArgumentException e) {
-            throw new NotDeSerializableException(e);
         }
+
+        rejectIfFalse(in.readUnsignedByte() == END_OF_SECTION, "Invalid macaroon");
+        byte[] tag = in.readField(SIGNATURE);
+        rejectIfFalse(tag.length == 32, "Invalid authentication tag");
+        in.rejectTrailingData();
+
+        return new Macaroon(location, identifier, tag, caveats.toArray(new CaveatPacket[0]));
     }
 
-    private static void writeCaveat(OutputStream out, Caveat caveat) throws IOException {
-        if (caveat.id != null) {
-            writeOptionalField(out, LOCATION, caveat.loc);
-            writeField(out, IDENTIFIER, caveat.id);
-            writeOptionalField(out, VERIFIER_ID, caveat.vid);
-            out.write(END_OF_SECTION);
+    private static void rejectIfNotCaveatStart(CaveatPacket packet) {
+        if (packet.type != Type.cid) {
+            throw new IllegalArgumentException("unexpected packet type: " + packet.type);
         }
     }
 
-    private static void rejectIfFalse(boolean condition, String message) {
+    static void rejectIfFalse(boolean condition, String message) {
         if (!condition) {
             throw new NotDeSerializableException(message);
         }
     }
 
-    private static void writeField(OutputStream out, byte type, byte[] data) throws IOException {
-        out.write(type);
+    private static int fieldSize(int length) {
+        return 1 + varIntSize(length) + length;
+    }
+
+    private static void writeField(ByteBuffer out, byte type, byte[] data) {
+        out.put(type);
         writeVarInt(out, data.length);
-        out.write(data);
+        out.put(data);
     }
 
-    private static void writeOptionalField(OutputStream out, byte type, byte[] data) throws IOException {
-        if (data != null) {
-            writeField(out, type, data);
+    private static int varIntSize(long value) {
+        int size = 1;
+        while (Long.compareUnsigned(value, 128L) >= 0) {
+            value >>>= 7;
+            size++;
         }
+        return size;
     }
 
-    private static void writeOptionalField(OutputStream out, byte type, String data) throws IOException {
-        if (data != null) {
-            writeField(out, type, data.getBytes(MacaroonsConstants.IDENTIFIER_CHARSET));
+    static void writeVarInt(ByteBuffer out, long value) {
+        while (Long.compareUnsigned(value, 128L) >= 0) {
+            out.put((byte) ((value & 127) | 128));
+            value >>>= 7;
         }
+        out.put((byte) (value & 127));
     }
 
-    private static byte[] readField(DataInputStream in, byte type) throws IOException {
-        rejectIfFalse(in.readUnsignedByte() == type, "Unexpected packet - expected type " + type);
-        long length = readVarInt(in);
-        rejectIfFalse(length >= 0 && length < 65536, "Packet too large");
-        byte[] data = new byte[(int) length];
-        in.readFully(data);
-        return data;
-    }
+    /**
+     * A cursor over the binary V2 format.
+     */
+    static final class Parser {
+        private final byte[] data;
+        private final int end;
+        private int pos;
+
+        Parser(byte[] data, int offset, int length) {
+            if (offset < 0 || length < 0 || offset > data.length - length) {
+                throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", data.length=" + data.length);
+            }
+            this.data = data;
+            this.pos = offset;
+            this.end = offset + length;
+        }
 
-    private static Optional<byte[]> readOptionalField(DataInputStream in, byte type) throws IOException {
-        if (peek(in) == type) {
-            return Optional.of(readField(in, type));
+        int peek() {
+            rejectIfFalse(pos < end, "Unexpected end of macaroon");
+            return data[pos] & 0xff;
         }
-        return Optional.empty();
-    }
 
-    private static String readStringField(DataInputStream in, byte type) throws IOException {
-        return new String(readField(in, type), MacaroonsConstants.IDENTIFIER_CHARSET);
-    }
+        int readUnsignedByte() {
+            int b = peek();
+            pos++;
+            return b;
+        }
 
-    private static Optional<String> readOptionalString(DataInputStream in, byte type) throws IOException {
-        return readOptionalField(in, type).map(bytes -> new String(bytes, MacaroonsConstants.IDENTIFIER_CHARSET));
-    }
+        int position() {
+            return pos;
+        }
 
-    private static int peek(DataInputStream in) throws IOException {
-        in.mark(1);
-        int result = in.readUnsignedByte();
-        in.reset();
-        return result;
-    }
+        void skip(int length) {
+            pos += length;
+        }
 
-    static void writeVarInt(OutputStream out, long value) throws IOException {
-        while (Long.compareUnsigned(value, 128L) >= 0) {
-            out.write((int) (value & 127) | 128);
-            value >>>= 7;
+        /**
+         * @throws NotDeSerializableException if there's data after the current position
+         */
+        void rejectTrailingData() {
+            rejectIfFalse(pos == end, "Unexpected data after macaroon");
         }
-        out.write((int) (value & 127));
-    }
 
-    static long readVarInt(DataInputStream in) throws IOException {
-        long result = 0L;
-        int shift = 0;
-        long b = in.readUnsignedByte();
-        while ((b & 128) != 0 && shift <= 64) {
-            result |= ((b & 127L) << shift);
-            shift += 7;
-            b = in.readUnsignedByte();
-        }
-        result |= (b << shift);
-        return result;
-    }
+        /**
+         * @return the length of the field's data, which starts at {@link #pos}
+         */
+        int readFieldHeader(byte type) {
+            rejectIfFalse(readUnsignedByte() == type, "Unexpected packet - expected type " + type);
+            long length = readVarInt();
+            rejectIfFalse(length >= 0 && length < 65536, "Packet too large");
+            rejectIfFalse(length <= end - pos, "Unexpected end of macaroon");
+            return (int) length;
+        }
+
+        byte[] readField(byte type) {
+            int length = readFieldHeader(type);
+            byte[] field = Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return field;
+        }
 
-    private static class Caveat {
-        byte[] id;
-        byte[] loc;
-        byte[] vid;
+        String readStringField(byte type) {
+            int length = readFieldHeader(type);
+            String field = new String(data, pos, length, MacaroonsConstants.IDENTIFIER_CHARSET);
+            pos += length;
+            return field;
+        }
+
+        long readVarInt() {
+            long result = 0L;
+            int shift = 0;
+            long b = readUnsignedByte();
+            while ((b & 128) != 0 && shift <= 64) {
+                result |= ((b & 127L) << shift);
+                shift += 7;
+                b = readUnsignedByte();
+            }
+            result |= (b << shift);
+            return result;
+        }
     }
 }
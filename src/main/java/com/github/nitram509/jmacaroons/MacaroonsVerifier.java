@@ -16,23 +16,19 @@
 
 package com.github.nitram509.jmacaroons;
 
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
-
-import static com.github.nitram509.jmacaroons.CaveatPacket.Type;
-import static com.github.nitram509.jmacaroons.CryptoTools.*;
-import static com.github.nitram509.jmacaroons.MacaroonsConstants.*;
-import static com.github.nitram509.jmacaroons.util.ArrayTools.appendToArray;
-import static com.github.nitram509.jmacaroons.util.ArrayTools.containsElement;
+import static com.github.nitram509.jmacaroons.CryptoTools.string_to_bytes;
 
+/**
+ * Verifies exactly one macaroon.
+ * When many macaroons have to be verified against the same rules,
+ * prefer a shared {@link com.github.nitram509.jmacaroons.VerificationPolicy}.
+ */
 public class MacaroonsVerifier {
 
-  private String[] predicates = new String[0];
-  private List<Macaroon> boundMacaroons = new ArrayList<>(3);
-  private GeneralCaveatVerifier[] generalCaveatVerifiers = new GeneralCaveatVerifier[0];
+  private final VerificationPolicy.Builder policyBuilder = VerificationPolicy.builder();
+  private final DischargeIndex boundMacaroons = new DischargeIndex();
   private final Macaroon macaroon;
+  private VerificationPolicy policy;
 
   public MacaroonsVerifier(Macaroon macaroon) {
     this.macaroon = macaroon;
@@ -53,15 +49,7 @@ public class MacaroonsVerifier {
    * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException when the runtime doesn't provide sufficient crypto support
    */
   public void assertIsValid(byte[] secret) throws MacaroonValidationException, GeneralSecurityRuntimeException {
-    try {
-      VerificationResult result = isValid_verify_raw(macaroon, generate_derived_key(secret));
-      if (result.fail) {
-        String msg = result.failMessage != null ? result.failMessage : "This macaroon isn't valid.";
-        throw new MacaroonValidationException(msg, macaroon);
-      }
-    } catch (InvalidKeyException | NoSuchAlgorithmException e) {
-      throw new GeneralSecurityRuntimeException(e);
-    }
+    policy().assertIsValid(macaroon, secret, boundMacaroons);
   }
 
   /**
@@ -79,100 +67,32 @@ public class MacaroonsVerifier {
    * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
    */
   public boolean isValid(byte[] secret) throws GeneralSecurityRuntimeException {
-    try {
-      return !isValid_verify_raw(macaroon, generate_derived_key(secret)).fail;
-    } catch (InvalidKeyException | NoSuchAlgorithmException e) {
-      throw new GeneralSecurityRuntimeException(e);
-    }
-  }
-
-  private VerificationResult isValid_verify_raw(Macaroon M, byte[] secret) throws NoSuchAlgorithmException, InvalidKeyException {
-    VerificationResult vresult = macaroon_verify_inner(M, secret);
-    if (!vresult.fail) {
-      vresult.fail = !safeEquals(vresult.csig, getMacaroon().signatureBytes);
-      if (vresult.fail) {
-        vresult = new VerificationResult("Verification failed. Signature doesn't match. Maybe the key was wrong OR some caveats aren't satisfied.");
-      }
-    }
-    return vresult;
-  }
-
-  private VerificationResult macaroon_verify_inner(Macaroon M, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException {
-    byte[] csig = macaroon_hmac(key, M.identifier);
-    if (M.caveatPackets != null) {
-      CaveatPacket[] caveatPackets = M.caveatPackets;
-      for (int i = 0; i < caveatPackets.length; i++) {
-        CaveatPacket caveat = caveatPackets[i];
-        if (caveat == null) continue;
-        if (caveat.type == Type.cl) continue;
-        if (!(caveat.type == Type.cid && caveatPackets[Math.min(i + 1, caveatPackets.length - 1)].type == Type.vid)) {
-          if (containsElement(predicates, caveat.getValueAsText()) || verifiesGeneral(caveat.getValueAsText())) {
-            csig = macaroon_hmac(csig, caveat.rawValue);
-          }
-        } else {
-          i++;
-          CaveatPacket caveat_vid = caveatPackets[i];
-          Macaroon boundMacaroon = findBoundMacaroon(caveat.getValueAsText());
-          if (boundMacaroon == null) {
-            String msg = "Couldn't verify 3rd party macaroon, because no discharged macaroon was provided to the verifier.";
-            return new VerificationResult(msg);
-          }
-          if (!macaroon_verify_inner_3rd(boundMacaroon, caveat_vid, csig)) {
-            String msg = "Couldn't verify 3rd party macaroon, identifier= " + boundMacaroon.identifier;
-            return new VerificationResult(msg);
-          }
-          byte[] data = caveat.rawValue;
-          byte[] vdata = caveat_vid.rawValue;
-          csig = macaroon_hash2(csig, vdata, data);
-        }
-      }
-    }
-    return new VerificationResult(csig);
+    return policy().isValid(macaroon, secret, boundMacaroons);
   }
 
-  private boolean macaroon_verify_inner_3rd(Macaroon M, CaveatPacket C, byte[] sig) throws InvalidKeyException, NoSuchAlgorithmException {
-    if (M == null) return false;
-    byte[] enc_plaintext = new byte[MACAROON_SECRET_TEXT_ZERO_BYTES + MACAROON_HASH_BYTES];
-    byte[] enc_ciphertext = new byte[MACAROON_SECRET_BOX_ZERO_BYTES + MACAROON_HASH_BYTES + SECRET_BOX_OVERHEAD];
-
-    byte[] vid_data = C.rawValue;
-    assert vid_data.length == VID_NONCE_KEY_SZ;
-    /*
-     * the nonce is in the first MACAROON_SECRET_NONCE_BYTES
-     * of the vid; the ciphertext is in the rest of it.
-     */
-    byte[] enc_nonce = new byte[MACAROON_SECRET_NONCE_BYTES];
-    System.arraycopy(vid_data, 0, enc_nonce, 0, MACAROON_SECRET_NONCE_BYTES);
-
-    /* fill in the ciphertext */
-    System.arraycopy(vid_data, MACAROON_SECRET_NONCE_BYTES, enc_ciphertext, MACAROON_SECRET_BOX_ZERO_BYTES, vid_data.length - MACAROON_SECRET_NONCE_BYTES);
-    boolean valid = 0 == macaroon_secretbox_open(sig, enc_nonce, enc_ciphertext, enc_plaintext);
-
-    byte[] key = new byte[MACAROON_HASH_BYTES];
-    System.arraycopy(enc_plaintext, MACAROON_SECRET_TEXT_ZERO_BYTES, key, 0, MACAROON_HASH_BYTES);
-    VerificationResult vresult = macaroon_verify_inner(M, key);
-
-    byte[] data = getMacaroon().signatureBytes;
-    byte[] csig = macaroon_bind(data, vresult.csig);
-
-    return valid && safeEquals(csig, M.signatureBytes);
+  /**
+   * @param secret secret this secret will be enhanced, in case it's shorter than {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH}
+   * @return the result, with the failed caveat and the reason, if the macaroon isn't valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   */
+  public VerificationResult verify(String secret) throws GeneralSecurityRuntimeException {
+    return verify(string_to_bytes(secret));
   }
 
-  private Macaroon findBoundMacaroon(String identifier) {
-    for (Macaroon boundMacaroon : boundMacaroons) {
-      if (identifier.equals(boundMacaroon.identifier)) {
-        return boundMacaroon;
-      }
-    }
-    return null;
+  /**
+   * @param secret secret this secret will be used as it is (be sure that has suggested length {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH})
+   * @return the result, with the failed caveat and the reason, if the macaroon isn't valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   */
+  public VerificationResult verify(byte[] secret) throws GeneralSecurityRuntimeException {
+    return policy().verify(macaroon, secret, boundMacaroons);
   }
 
-  private boolean verifiesGeneral(String caveat) {
-    boolean found = false;
-    for (GeneralCaveatVerifier verifier : this.generalCaveatVerifiers) {
-      found |= verifier.verifyCaveat(caveat);
+  private VerificationPolicy policy() {
+    if (policy == null) {
+      policy = policyBuilder.build();
     }
-    return found;
+    return policy;
   }
 
   /**
@@ -188,13 +108,16 @@ public class MacaroonsVerifier {
    */
   public MacaroonsVerifier satisfyExact(String caveat) {
     if (caveat != null) {
-      this.predicates = appendToArray(this.predicates, caveat);
+      this.policyBuilder.satisfyExact(caveat);
+      this.policy = null;
     }
     return this;
   }
 
   /**
    * Binds a prepared macaroon.
+   * It's found by its identifier, which has to be unique among the bound macaroons,
+   * else the verification fails with {@link VerificationResult.Failure#DISCHARGE_DUPLICATE}.
    *
    * @param preparedMacaroon preparedMacaroon
    * @return this {@link com.github.nitram509.jmacaroons.MacaroonsVerifier}
@@ -215,33 +138,31 @@ public class MacaroonsVerifier {
    * There's no limit on the contents of a general caveat,
    * so long as the callback understands how to determine whether it is satisfied.
    * This technique is called "general caveats".
+   * Verifiers, which declare a {@link GeneralCaveatVerifier#getCaveatPrefix()},
+   * are only asked for caveats starting with this prefix.
    *
    * @param verifier verifier
    * @return this {@link com.github.nitram509.jmacaroons.MacaroonsVerifier}
    */
   public MacaroonsVerifier satisfyGeneral(GeneralCaveatVerifier verifier) {
     if (verifier != null) {
-      this.generalCaveatVerifiers = appendToArray(this.generalCaveatVerifiers, verifier);
+      this.policyBuilder.satisfyGeneral(verifier);
+      this.policy = null;
     }
     return this;
   }
 
-  public Macaroon getMacaroon() {
-    return macaroon;
+  /**
+   * @param failFast true, to stop at the first caveat, which isn't satisfied, see {@link VerificationPolicy.Builder#failFast(boolean)}
+   * @return this {@link com.github.nitram509.jmacaroons.MacaroonsVerifier}
+   */
+  public MacaroonsVerifier failFast(boolean failFast) {
+    this.policyBuilder.failFast(failFast);
+    this.policy = null;
+    return this;
   }
 
-  private static class VerificationResult {
-    byte[] csig = null;
-    boolean fail = false;
-    String failMessage = null;
-
-    private VerificationResult(byte[] csig) {
-      this.csig = csig;
-    }
-
-    private VerificationResult(String failMessage) {
-      this.failMessage = failMessage;
-      this.fail = true;
-    }
+  public Macaroon getMacaroon() {
+    return macaroon;
   }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import java.security.InvalidKeyException;
+
+/**
+ * Like the default provider, but HMAC-SHA256 is computed by the allocation free
+ * {@link com.github.nitram509.jmacaroons.crypto.HmacSha256} instead of {@link javax.crypto.Mac}.
+ * Secretbox and randomness are the ones of {@link CryptoProviders#defaultProvider()}.
+ * It doesn't allocate per HMAC, but where the JDK has SHA-256 intrinsics it's slower than the default,
+ * thus it's not recommended as default, only where allocations matter more than throughput.
+ * Install it by {@link CryptoProviders#set(CryptoProvider)} or register it for the {@link java.util.ServiceLoader}.
+ */
+public final class PureJavaHmacCryptoProvider implements CryptoProvider {
+
+  @Override
+  public void hmacSha256(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset) {
+    try {
+      HmacChain.pureJava().hmac(key, message, offset, length, out, outOffset);
+    } catch (InvalidKeyException e) {
+      throw new GeneralSecurityRuntimeException(e);
+    }
+  }
+
+  @Override
+  public int secretbox(byte[] ciphertext, byte[] plaintext, int length, byte[] nonce, byte[] key) {
+    return CryptoProviders.defaultProvider().secretbox(ciphertext, plaintext, length, nonce, key);
+  }
+
+  @Override
+  public int secretboxOpen(byte[] plaintext, byte[] ciphertext, int length, byte[] nonce, byte[] key) {
+    return CryptoProviders.defaultProvider().secretboxOpen(plaintext, ciphertext, length, nonce, key);
+  }
+
+  @Override
+  public int secretbox(byte[] ciphertext, int ciphertextOffset, byte[] plaintext, int plaintextOffset, int length,
+                       byte[] nonce, int nonceOffset, byte[] key) {
+    return CryptoProviders.defaultProvider().secretbox(ciphertext, ciphertextOffset, plaintext, plaintextOffset, length, nonce, nonceOffset, key);
+  }
+
+  @Override
+  public int secretboxOpen(byte[] plaintext, int plaintextOffset, byte[] ciphertext, int ciphertextOffset, int length,
+                           byte[] nonce, int nonceOffset, byte[] key) {
+    return CryptoProviders.defaultProvider().secretboxOpen(plaintext, plaintextOffset, ciphertext, ciphertextOffset, length, nonce, nonceOffset, key);
+  }
+
+  @Override
+  public void nextBytes(byte[] bytes) {
+    CryptoProviders.defaultProvider().nextBytes(bytes);
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+/**
+ * Resolves the root secret of a macaroon, e.g. by its identifier or location,
+ * used by {@link VerificationPolicy#verifyAll(java.util.List, SecretResolver)}.
+ * Implementations have to be thread-safe, because macaroons may be verified in parallel.
+ */
+public interface SecretResolver {
+
+  /**
+   * @param macaroon macaroon to verify
+   * @return the secret, which will be used as it is (be sure that has suggested length {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH}),
+   * or null if there's none, then the macaroon fails with {@link VerificationResult.Failure#SECRET_UNKNOWN}
+   */
+  byte[] resolveSecret(Macaroon macaroon);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+/**
+ * The memoized serialized forms of one {@link Macaroon}, per format version.
+ * Instances are immutable, a new form is added by copying, see {@link Macaroon#serializedForms}.
+ */
+final class SerializedForms {
+
+  static final SerializedForms EMPTY = new SerializedForms(new String[2], new byte[2][]);
+
+  private final String[] strings;
+  private final byte[][] binaries;
+
+  private SerializedForms(String[] strings, byte[][] binaries) {
+    this.strings = strings;
+    this.binaries = binaries;
+  }
+
+  /**
+   * @param version format version, 1 or 2
+   * @return the string form or null
+   */
+  String string(int version) {
+    return strings[version - 1];
+  }
+
+  /**
+   * @param version format version, 1 or 2
+   * @return the binary form or null, it must not be modified
+   */
+  byte[] binary(int version) {
+    return binaries[version - 1];
+  }
+
+  SerializedForms withString(int version, String string) {
+    String[] newStrings = strings.clone();
+    newStrings[version - 1] = string;
+    return new SerializedForms(newStrings, binaries);
+  }
+
+  SerializedForms withBinary(int version, byte[] binary) {
+    byte[][] newBinaries = binaries.clone();
+    newBinaries[version - 1] = binary;
+    return new SerializedForms(strings, newBinaries);
+  }
+}
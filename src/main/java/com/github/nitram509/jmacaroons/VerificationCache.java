@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import com.github.nitram509.jmacaroons.verifier.TimestampCaveatVerifier;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.MACAROON_HASH_BYTES;
+import static com.github.nitram509.jmacaroons.MacaroonsSerializer.V2;
+
+/**
+ * An opt-in cache of successful verifications, so a macaroon presented again
+ * is accepted without verifying the HMAC chain and the caveats again, example:
+ * <pre>{@code
+ * VerificationPolicy policy = VerificationPolicy.builder()
+ *     .satisfyExact("account = 3735928559")
+ *     .verificationCache(VerificationCache.builder()
+ *         .maximumSize(10_000)
+ *         .expireAfterWrite(Duration.ofMinutes(1))
+ *         .build())
+ *     .build();
+ * }</pre>
+ * An entry is keyed by HMAC(derived key, context fingerprint || V2 binary forms of the macaroon and its discharge macaroons)
+ * and the policy, thus it only matches the very same macaroons (identifiers, locations, caveats and signatures),
+ * verified with the same secret by the same policy in the same request context, see {@link Builder#contextFingerprint(Supplier)}.
+ * Only valid results are cached. Macaroons with caveats, whose result depends on the time of verification,
+ * are never cached, see {@link Builder#timeDependentCaveatPrefixes(String...)}.
+ * The cache is bounded, least recently used entries are evicted first.
+ * This class is thread-safe.
+ */
+public final class VerificationCache {
+
+  private final int maximumSize;
+  private final long expireAfterWriteNanos;
+  private final byte[][] timeDependentCaveatPrefixes;
+  private final LongSupplier ticker;
+  private final Supplier<byte[]> contextFingerprint;
+  private final LinkedHashMap<Key, Long> entries;
+
+  private VerificationCache(Builder builder) {
+    this.maximumSize = builder.maximumSize;
+    this.expireAfterWriteNanos = builder.expireAfterWrite.toNanos();
+    this.timeDependentCaveatPrefixes = new byte[builder.timeDependentCaveatPrefixes.length][];
+    for (int i = 0; i < timeDependentCaveatPrefixes.length; i++) {
+      this.timeDependentCaveatPrefixes[i] = builder.timeDependentCaveatPrefixes[i].getBytes(IDENTIFIER_CHARSET);
+    }
+    this.ticker = builder.ticker;
+    this.contextFingerprint = builder.contextFingerprint;
+    this.entries = new LinkedHashMap<Key, Long>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+        return size() > VerificationCache.this.maximumSize;
+      }
+    };
+  }
+
+  /**
+   * @return a new {@link com.github.nitram509.jmacaroons.VerificationCache.Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return number of cached verifications, including expired ones not yet evicted
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Removes all cached verifications.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  /**
+   * @return the key, or null if the macaroons must not be cached
+   */
+  Key key(long policyId, byte[] derivedKey, Macaroon macaroon, List<Macaroon> dischargeMacaroons) throws InvalidKeyException {
+    if (isTimeDependent(macaroon)) {
+      return null;
+    }
+    byte[] context = contextFingerprint != null ? contextFingerprint.get() : null;
+    int size = 4 + (context != null ? context.length : 0) + V2.serializedBinarySize(macaroon);
+    for (Macaroon dischargeMacaroon : dischargeMacaroons) {
+      if (isTimeDependent(dischargeMacaroon)) {
+        return null;
+      }
+      size += V2.serializedBinarySize(dischargeMacaroon);
+    }
+    // the V2 forms are self-delimiting, so the concatenation is unambiguous
+    ByteBuffer content = ByteBuffer.allocate(size);
+    if (context != null) {
+      content.putInt(context.length).put(context);
+    } else {
+      content.putInt(-1);
+    }
+    V2.serializeBinary(macaroon, content);
+    for (Macaroon dischargeMacaroon : dischargeMacaroons) {
+      V2.serializeBinary(dischargeMacaroon, content);
+    }
+    byte[] digest = new byte[MACAROON_HASH_BYTES];
+    HmacChain.get().hmac(derivedKey, content.array(), digest);
+    return new Key(policyId, digest);
+  }
+
+  synchronized boolean contains(Key key) {
+    Long expiresAt = entries.get(key);
+    if (expiresAt == null) {
+      return false;
+    }
+    if (ticker.getAsLong() - expiresAt >= 0) {
+      entries.remove(key);
+      return false;
+    }
+    return true;
+  }
+
+  synchronized void put(Key key) {
+    if (maximumSize > 0) {
+      entries.put(key, ticker.getAsLong() + expireAfterWriteNanos);
+    }
+  }
+
+  private boolean isTimeDependent(Macaroon macaroon) {
+    if (macaroon.caveatPackets == null) {
+      return false;
+    }
+    for (CaveatPacket caveat : macaroon.caveatPackets) {
+      if (caveat != null && caveat.type == CaveatPacket.Type.cid) {
+        for (byte[] prefix : timeDependentCaveatPrefixes) {
+          if (startsWith(caveat.rawValue, prefix)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(byte[] value, byte[] prefix) {
+    if (value.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (value[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static final class Key {
+    private final long policyId;
+    private final byte[] digest;
+    private final int hash;
+
+    private Key(long policyId, byte[] digest) {
+      this.policyId = policyId;
+      this.digest = digest;
+      this.hash = 31 * Long.hashCode(policyId) + Arrays.hashCode(digest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key that = (Key) o;
+      return policyId == that.policyId && MessageDigest.isEqual(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Used to build a {@link com.github.nitram509.jmacaroons.VerificationCache}.
+   */
+  public static final class Builder {
+
+    private int maximumSize = 1000;
+    private Duration expireAfterWrite = Duration.ofMinutes(5);
+    private String[] timeDependentCaveatPrefixes = {TimestampCaveatVerifier.CAVEAT_PREFIX};
+    private LongSupplier ticker = System::nanoTime;
+    private Supplier<byte[]> contextFingerprint;
+
+    private Builder() {
+    }
+
+    /**
+     * @param maximumSize maximum number of cached verifications, default 1000
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationCache.Builder}
+     */
+    public Builder maximumSize(int maximumSize) {
+      if (maximumSize < 0) {
+        throw new IllegalArgumentException("maximumSize must not be negative, but was " + maximumSize);
+      }
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * @param expireAfterWrite how long a verification is cached, default 5 minutes
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationCache.Builder}
+     */
+    public Builder expireAfterWrite(Duration expireAfterWrite) {
+      if (expireAfterWrite == null || expireAfterWrite.isNegative()) {
+        throw new IllegalArgumentException("expireAfterWrite must not be negative, but was " + expireAfterWrite);
+      }
+      this.expireAfterWrite = expireAfterWrite;
+      return this;
+    }
+
+    /**
+     * Macaroons with a caveat starting with one of these prefixes, are never cached.
+     * Default is {@link TimestampCaveatVerifier#CAVEAT_PREFIX}.
+     *
+     * @param prefixes caveat prefixes, replacing the default ones
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationCache.Builder}
+     */
+    public Builder timeDependentCaveatPrefixes(String... prefixes) {
+      this.timeDependentCaveatPrefixes = prefixes != null ? prefixes.clone() : new String[0];
+      return this;
+    }
+
+    /**
+     * The results of general caveat verifiers may depend on the request, e.g. on the requested resource.
+     * Such a request context has to be part of the key, else a verification in one context is reused in another one.
+     * The supplier is called on the verifying thread for each verification, e.g. to read a hash of the
+     * request's resource and action from a thread local. A null fingerprint is distinct from an empty one.
+     * Default is no fingerprint, for policies whose caveats don't depend on the request.
+     *
+     * @param contextFingerprint supplies the fingerprint of the current request context
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationCache.Builder}
+     */
+    public Builder contextFingerprint(Supplier<byte[]> contextFingerprint) {
+      this.contextFingerprint = contextFingerprint;
+      return this;
+    }
+
+    Builder ticker(LongSupplier ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    /**
+     * @return a new {@link com.github.nitram509.jmacaroons.VerificationCache}
+     */
+    public VerificationCache build() {
+      return new VerificationCache(this);
+    }
+  }
+}
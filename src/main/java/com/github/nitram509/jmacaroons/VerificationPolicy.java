@@ -0,0 +1,512 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.nitram509.jmacaroons.CaveatPacket.Type;
+import static com.github.nitram509.jmacaroons.VerificationResult.Failure;
+import static com.github.nitram509.jmacaroons.CryptoTools.*;
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.*;
+
+/**
+ * An immutable set of rules, which caveats are satisfied.
+ * In contrast to {@link com.github.nitram509.jmacaroons.MacaroonsVerifier}, a policy is not bound to a single macaroon.
+ * It is built once and can be shared between threads, to verify any number of macaroons, example:
+ * <pre>{@code
+ * VerificationPolicy policy = VerificationPolicy.builder()
+ *     .satisfyExact("account = 3735928559")
+ *     .satisfyGeneral(new TimestampCaveatVerifier())
+ *     .build();
+ * boolean valid = policy.isValid(macaroon, secret, dischargeMacaroon);
+ * }</pre>
+ * Note: all registered {@link com.github.nitram509.jmacaroons.GeneralCaveatVerifier}s have to be thread-safe,
+ * when the policy is shared between threads.
+ * <p>
+ * By default, the whole signature chain is computed, even if a caveat isn't satisfied,
+ * so the time of a rejection doesn't tell which caveat failed.
+ * A policy built with {@link Builder#failFast(boolean)} stops at the first caveat, which isn't satisfied.
+ * </p>
+ * <p>
+ * Discharge macaroons are found by their identifiers, thus the identifiers of the discharge macaroons
+ * of one verification have to be unique, else the verification fails with
+ * {@link VerificationResult.Failure#DISCHARGE_DUPLICATE}.
+ * </p>
+ */
+public final class VerificationPolicy {
+
+  private static final int BATCH_CHUNKS_PER_CPU = 4;
+  private static final int BATCH_DERIVED_KEYS = 16;
+  private static final AtomicLong IDS = new AtomicLong();
+
+  private final long id = IDS.incrementAndGet();
+  private final ExactCaveatIndex predicates;
+  private final GeneralCaveatVerifierRegistry generalCaveatVerifiers;
+  private final VerificationCache verificationCache;
+  private final boolean failFast;
+
+  private VerificationPolicy(Builder builder) {
+    this.predicates = ExactCaveatIndex.of(builder.predicates);
+    this.generalCaveatVerifiers = GeneralCaveatVerifierRegistry.of(builder.generalCaveatVerifiers);
+    this.verificationCache = builder.verificationCache;
+    this.failFast = builder.failFast;
+  }
+
+  /**
+   * @return a new {@link com.github.nitram509.jmacaroons.VerificationPolicy.Builder}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @param macaroon           macaroon to verify
+   * @param secret             secret this secret will be enhanced, in case it's shorter than {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH}
+   * @param dischargeMacaroons prepared discharge macaroons, which satisfy the 3rd party caveats
+   * @throws com.github.nitram509.jmacaroons.MacaroonValidationException     when the macaroon isn't valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException when the runtime doesn't provide sufficient crypto support
+   */
+  public void assertIsValid(Macaroon macaroon, String secret, Macaroon... dischargeMacaroons) throws MacaroonValidationException, GeneralSecurityRuntimeException {
+    assertIsValid(macaroon, string_to_bytes(secret), dischargeMacaroons);
+  }
+
+  /**
+   * @param macaroon           macaroon to verify
+   * @param secret             secret this secret will be used as it is (be sure that has suggested length {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH})
+   * @param dischargeMacaroons prepared discharge macaroons, which satisfy the 3rd party caveats
+   * @throws com.github.nitram509.jmacaroons.MacaroonValidationException     when the macaroon isn't valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException when the runtime doesn't provide sufficient crypto support
+   */
+  public void assertIsValid(Macaroon macaroon, byte[] secret, Macaroon... dischargeMacaroons) throws MacaroonValidationException, GeneralSecurityRuntimeException {
+    assertIsValid(macaroon, secret, asList(dischargeMacaroons));
+  }
+
+  /**
+   * @param macaroon           macaroon to verify
+   * @param secret             secret this secret will be enhanced, in case it's shorter than {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH}
+   * @param dischargeMacaroons prepared discharge macaroons, which satisfy the 3rd party caveats
+   * @return true/false if the macaroon is valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   */
+  public boolean isValid(Macaroon macaroon, String secret, Macaroon... dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return isValid(macaroon, string_to_bytes(secret), dischargeMacaroons);
+  }
+
+  /**
+   * @param macaroon           macaroon to verify
+   * @param secret             secret this secret will be used as it is (be sure that has suggested length {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH})
+   * @param dischargeMacaroons prepared discharge macaroons, which satisfy the 3rd party caveats
+   * @return true/false if the macaroon is valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   */
+  public boolean isValid(Macaroon macaroon, byte[] secret, Macaroon... dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return isValid(macaroon, secret, asList(dischargeMacaroons));
+  }
+
+  /**
+   * @param macaroon           macaroon to verify
+   * @param secret             secret this secret will be enhanced, in case it's shorter than {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH}
+   * @param dischargeMacaroons prepared discharge macaroons, which satisfy the 3rd party caveats
+   * @return the result, with the failed caveat and the reason, if the macaroon isn't valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   * @see #verify(Macaroon, byte[], Macaroon...)
+   */
+  public VerificationResult verify(Macaroon macaroon, String secret, Macaroon... dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return verify(macaroon, string_to_bytes(secret), dischargeMacaroons);
+  }
+
+  /**
+   * Verifies without throwing for invalid macaroons, neither exceptions nor messages are created for rejections.
+   *
+   * @param macaroon           macaroon to verify
+   * @param secret             secret this secret will be used as it is (be sure that has suggested length {@link com.github.nitram509.jmacaroons.MacaroonsConstants#MACAROON_SUGGESTED_SECRET_LENGTH})
+   * @param dischargeMacaroons prepared discharge macaroons, which satisfy the 3rd party caveats
+   * @return the result, with the failed caveat and the reason, if the macaroon isn't valid
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   */
+  public VerificationResult verify(Macaroon macaroon, byte[] secret, Macaroon... dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return verify(macaroon, secret, asList(dischargeMacaroons));
+  }
+
+  /**
+   * Verifies many macaroons without discharge macaroons, in parallel, using the {@link ForkJoinPool#commonPool()}.
+   *
+   * @param macaroons      macaroons to verify
+   * @param secretResolver resolves the secret of each macaroon
+   * @return the result per macaroon, in the same order
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   * @see #verifyAll(List, List, SecretResolver, Executor)
+   */
+  public List<VerificationResult> verifyAll(List<Macaroon> macaroons, SecretResolver secretResolver) throws GeneralSecurityRuntimeException {
+    return verifyAll(macaroons, null, secretResolver, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Verifies many macaroons in parallel.
+   * The macaroons are split in chunks, which are verified by the executor,
+   * the first chunk is verified by the calling thread.
+   * Within a chunk, the derived key of each secret is computed only once.
+   * A macaroon, whose secret isn't resolved, fails with {@link VerificationResult.Failure#SECRET_UNKNOWN}.
+   *
+   * @param macaroons          macaroons to verify
+   * @param dischargeMacaroons prepared discharge macaroons per macaroon, in the same order, may be null if there are none
+   * @param secretResolver     resolves the secret of each macaroon
+   * @param executor           executor for the chunks, e.g. a {@link ForkJoinPool}
+   * @return the result per macaroon, in the same order
+   * @throws com.github.nitram509.jmacaroons.GeneralSecurityRuntimeException GeneralSecurityRuntimeException
+   */
+  public List<VerificationResult> verifyAll(List<Macaroon> macaroons, List<List<Macaroon>> dischargeMacaroons, SecretResolver secretResolver, Executor executor) throws GeneralSecurityRuntimeException {
+    if (dischargeMacaroons != null && dischargeMacaroons.size() != macaroons.size()) {
+      throw new IllegalArgumentException("Expected discharge macaroons for " + macaroons.size() + " macaroons, but got " + dischargeMacaroons.size());
+    }
+    VerificationResult[] results = new VerificationResult[macaroons.size()];
+    int chunks = Math.min(results.length, Runtime.getRuntime().availableProcessors() * BATCH_CHUNKS_PER_CPU);
+    if (chunks == 0) {
+      return Collections.emptyList();
+    }
+    int chunkSize = (results.length + chunks - 1) / chunks;
+    List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+    AtomicBoolean aborted = new AtomicBoolean();
+    boolean submittedAndVerified = false;
+    try {
+      for (int from = chunkSize; from < results.length; from += chunkSize) {
+        int start = from;
+        int end = Math.min(from + chunkSize, results.length);
+        futures.add(CompletableFuture.runAsync(() -> verifyChunk(macaroons, dischargeMacaroons, secretResolver, results, start, end, aborted), executor));
+      }
+      verifyChunk(macaroons, dischargeMacaroons, secretResolver, results, 0, Math.min(chunkSize, results.length), aborted);
+      submittedAndVerified = true;
+    } finally {
+      if (!submittedAndVerified) {
+        // the submitted chunks stop at their next macaroon and are awaited,
+        // so none of them writes into the results after this method failed
+        aborted.set(true);
+        awaitQuietly(futures);
+      }
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+    return Collections.unmodifiableList(Arrays.asList(results));
+  }
+
+  private static void awaitQuietly(List<CompletableFuture<Void>> futures) {
+    for (CompletableFuture<Void> future : futures) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        // the failure of the calling thread is thrown instead
+      }
+    }
+  }
+
+  private void verifyChunk(List<Macaroon> macaroons, List<List<Macaroon>> dischargeMacaroons, SecretResolver secretResolver, VerificationResult[] results, int start, int end, AtomicBoolean aborted) {
+    DerivedKeyCache derivedKeys = new DerivedKeyCache(BATCH_DERIVED_KEYS);
+    try {
+      for (int i = start; i < end && !aborted.get(); i++) {
+        Macaroon macaroon = macaroons.get(i);
+        byte[] secret = secretResolver.resolveSecret(macaroon);
+        if (secret == null) {
+          results[i] = VerificationResult.failure(Failure.SECRET_UNKNOWN, macaroon, -1);
+          continue;
+        }
+        byte[] derivedKey = derivedKeys.get(secret);
+        if (derivedKey == null) {
+          derivedKey = derive(secret);
+          derivedKeys.put(secret, derivedKey);
+        }
+        List<Macaroon> discharges = dischargeMacaroons != null && dischargeMacaroons.get(i) != null
+            ? dischargeMacaroons.get(i)
+            : Collections.<Macaroon>emptyList();
+        results[i] = verifyWithDerivedKey(macaroon, derivedKey, DischargeIndex.of(discharges));
+      }
+    } finally {
+      derivedKeys.clear();
+    }
+  }
+
+  void assertIsValid(Macaroon macaroon, byte[] secret, List<Macaroon> dischargeMacaroons) throws MacaroonValidationException, GeneralSecurityRuntimeException {
+    assertIsValid(macaroon, secret, DischargeIndex.of(dischargeMacaroons));
+  }
+
+  void assertIsValid(Macaroon macaroon, byte[] secret, DischargeIndex dischargeMacaroons) throws MacaroonValidationException, GeneralSecurityRuntimeException {
+    VerificationResult result = verify(macaroon, secret, dischargeMacaroons);
+    if (!result.isValid()) {
+      throw new MacaroonValidationException(result);
+    }
+  }
+
+  boolean isValid(Macaroon macaroon, byte[] secret, List<Macaroon> dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return isValid(macaroon, secret, DischargeIndex.of(dischargeMacaroons));
+  }
+
+  boolean isValid(Macaroon macaroon, byte[] secret, DischargeIndex dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return verify(macaroon, secret, dischargeMacaroons).isValid();
+  }
+
+  VerificationResult verify(Macaroon macaroon, byte[] secret, List<Macaroon> dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return verify(macaroon, secret, DischargeIndex.of(dischargeMacaroons));
+  }
+
+  VerificationResult verify(Macaroon macaroon, byte[] secret, DischargeIndex dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    return verifyWithDerivedKey(macaroon, derive(secret), dischargeMacaroons);
+  }
+
+  private static byte[] derive(byte[] secret) throws GeneralSecurityRuntimeException {
+    try {
+      return generate_derived_key(secret);
+    } catch (InvalidKeyException | NoSuchAlgorithmException e) {
+      throw new GeneralSecurityRuntimeException(e);
+    }
+  }
+
+  private VerificationResult verifyWithDerivedKey(Macaroon macaroon, byte[] derivedKey, DischargeIndex dischargeMacaroons) throws GeneralSecurityRuntimeException {
+    if (dischargeMacaroons.duplicate() != null) {
+      return VerificationResult.failure(Failure.DISCHARGE_DUPLICATE, dischargeMacaroons.duplicate(), -1);
+    }
+    try {
+      VerificationCache.Key cacheKey = null;
+      if (verificationCache != null) {
+        cacheKey = verificationCache.key(id, derivedKey, macaroon, dischargeMacaroons.macaroons());
+        if (cacheKey != null && verificationCache.contains(cacheKey)) {
+          return VerificationResult.VALID;
+        }
+      }
+      VerificationResult result = new Verification(macaroon, dischargeMacaroons).isValid_verify_raw(derivedKey);
+      if (cacheKey != null && result.isValid()) {
+        verificationCache.put(cacheKey);
+      }
+      return result;
+    } catch (InvalidKeyException | NoSuchAlgorithmException e) {
+      throw new GeneralSecurityRuntimeException(e);
+    }
+  }
+
+  private boolean verifiesExact(CaveatPacket caveat) {
+    return predicates.contains(caveat.rawValue);
+  }
+
+  private boolean verifiesGeneral(CaveatPacket caveat) {
+    return generalCaveatVerifiers.verifies(caveat);
+  }
+
+  private static List<Macaroon> asList(Macaroon[] macaroons) {
+    return macaroons == null ? Collections.emptyList() : Arrays.asList(macaroons);
+  }
+
+  /**
+   * The state of verifying exactly one macaroon with its discharge macaroons.
+   */
+  private final class Verification {
+
+    private final Macaroon macaroon;
+    private final DischargeIndex boundMacaroons;
+    /**
+     * The first caveat of the macaroon, which isn't satisfied, when the chain is completed anyway.
+     */
+    private VerificationResult firstFailure;
+
+    private Verification(Macaroon macaroon, DischargeIndex boundMacaroons) {
+      this.macaroon = macaroon;
+      this.boundMacaroons = boundMacaroons;
+    }
+
+    private VerificationResult isValid_verify_raw(byte[] secret) throws NoSuchAlgorithmException, InvalidKeyException {
+      ChainResult vresult = macaroon_verify_inner(macaroon, secret);
+      if (vresult.failure != null) {
+        return vresult.failure;
+      }
+      if (!safeEquals(vresult.csig, macaroon.signatureBytes)) {
+        return firstFailure != null
+            ? firstFailure
+            : VerificationResult.failure(Failure.SIGNATURE_MISMATCH, macaroon, -1);
+      }
+      return VerificationResult.VALID;
+    }
+
+    private ChainResult macaroon_verify_inner(Macaroon M, byte[] key) throws InvalidKeyException, NoSuchAlgorithmException {
+      HmacChain chain = HmacChain.get();
+      byte[] csig = new byte[MACAROON_HASH_BYTES];
+      chain.hmac(key, M.identifier.getBytes(IDENTIFIER_CHARSET), csig);
+      if (M.caveatPackets != null) {
+        CaveatPacket[] caveatPackets = M.caveatPackets;
+        for (int i = 0; i < caveatPackets.length; i++) {
+          CaveatPacket caveat = caveatPackets[i];
+          if (caveat == null) continue;
+          if (caveat.type == Type.cl) continue;
+          if (!(caveat.type == Type.cid && caveatPackets[Math.min(i + 1, caveatPackets.length - 1)].type == Type.vid)) {
+            if (verifiesExact(caveat) || verifiesGeneral(caveat)) {
+              chain.hmac(csig, caveat.rawValue, csig);
+            } else if (failFast || firstFailure == null && M == macaroon) {
+              VerificationResult failure = VerificationResult.failure(Failure.CAVEAT_NOT_SATISFIED, M, i);
+              if (failFast) {
+                return new ChainResult(failure);
+              }
+              firstFailure = failure;
+            }
+          } else {
+            int caveatIndex = i;
+            i++;
+            CaveatPacket caveat_vid = caveatPackets[i];
+            Macaroon boundMacaroon = boundMacaroons.get(caveat.rawValue);
+            if (boundMacaroon == null) {
+              return fail(Failure.DISCHARGE_MISSING, M, caveatIndex);
+            }
+            if (!macaroon_verify_inner_3rd(boundMacaroon, caveat_vid, csig)) {
+              return fail(Failure.DISCHARGE_INVALID, M, caveatIndex);
+            }
+            byte[] data = caveat.rawValue;
+            byte[] vdata = caveat_vid.rawValue;
+            chain.hash2(csig, vdata, data, csig);
+          }
+        }
+      }
+      return new ChainResult(csig);
+    }
+
+    private boolean macaroon_verify_inner_3rd(Macaroon M, CaveatPacket C, byte[] sig) throws InvalidKeyException, NoSuchAlgorithmException {
+      if (M == null) return false;
+      byte[] vid_data = C.rawValue;
+      assert vid_data.length == VID_NONCE_KEY_SZ;
+      /*
+       * the nonce is in the first MACAROON_SECRET_NONCE_BYTES
+       * of the vid; the ciphertext is in the rest of it.
+       */
+      byte[] key = new byte[MACAROON_HASH_BYTES];
+      boolean valid = 0 == macaroon_secretbox_open(sig, vid_data, vid_data, MACAROON_SECRET_NONCE_BYTES, vid_data.length - MACAROON_SECRET_NONCE_BYTES, key);
+      if (!valid && failFast) return false;
+
+      ChainResult vresult = macaroon_verify_inner(M, key);
+      if (vresult.failure != null) return false;
+
+      byte[] data = macaroon.signatureBytes;
+      byte[] csig = vresult.csig;
+      macaroon_bind(data, csig, csig);
+
+      return valid && safeEquals(csig, M.signatureBytes);
+    }
+
+    /**
+     * Any caveat of the macaroon, which wasn't satisfied before, is the first failure.
+     */
+    private ChainResult fail(Failure failure, Macaroon M, int caveatIndex) {
+      return new ChainResult(firstFailure != null ? firstFailure : VerificationResult.failure(failure, M, caveatIndex));
+    }
+  }
+
+  /**
+   * Either the computed signature of a chain or the failure, which stopped it.
+   */
+  private static final class ChainResult {
+    private final byte[] csig;
+    private final VerificationResult failure;
+
+    private ChainResult(byte[] csig) {
+      this.csig = csig;
+      this.failure = null;
+    }
+
+    private ChainResult(VerificationResult failure) {
+      this.csig = null;
+      this.failure = failure;
+    }
+  }
+
+  /**
+   * Used to build a {@link com.github.nitram509.jmacaroons.VerificationPolicy}.
+   * A builder is not thread-safe, but the policies built by it are.
+   */
+  public static final class Builder {
+
+    private final List<String> predicates = new ArrayList<>();
+    private final List<GeneralCaveatVerifier> generalCaveatVerifiers = new ArrayList<>();
+    private VerificationCache verificationCache;
+    private boolean failFast;
+
+    private Builder() {
+    }
+
+    /**
+     * @param caveat caveat, which is satisfied by exact match
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationPolicy.Builder}
+     * @see com.github.nitram509.jmacaroons.MacaroonsVerifier#satisfyExact(String)
+     */
+    public Builder satisfyExact(String caveat) {
+      if (caveat != null) {
+        this.predicates.add(caveat);
+      }
+      return this;
+    }
+
+    /**
+     * @param verifier verifier, which has to be thread-safe, when the policy is shared between threads
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationPolicy.Builder}
+     * @see com.github.nitram509.jmacaroons.MacaroonsVerifier#satisfyGeneral(GeneralCaveatVerifier)
+     */
+    public Builder satisfyGeneral(GeneralCaveatVerifier verifier) {
+      if (verifier != null) {
+        this.generalCaveatVerifiers.add(verifier);
+      }
+      return this;
+    }
+
+    /**
+     * @param verificationCache cache of successful verifications, null (default) disables caching
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationPolicy.Builder}
+     * @see com.github.nitram509.jmacaroons.VerificationCache
+     */
+    public Builder verificationCache(VerificationCache verificationCache) {
+      this.verificationCache = verificationCache;
+      return this;
+    }
+
+    /**
+     * @param failFast true, to stop the verification at the first caveat, which isn't satisfied.
+     *                 This saves the HMACs of the remaining caveats and discharge macaroons for rejected macaroons,
+     *                 but the time of a rejection then depends on the position of the caveat.
+     *                 false (default) computes the whole chain.
+     * @return this {@link com.github.nitram509.jmacaroons.VerificationPolicy.Builder}
+     */
+    public Builder failFast(boolean failFast) {
+      this.failFast = failFast;
+      return this;
+    }
+
+    /**
+     * @return a new immutable {@link com.github.nitram509.jmacaroons.VerificationPolicy}
+     */
+    public VerificationPolicy build() {
+      return new VerificationPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+/**
+ * The outcome of verifying a macaroon, see {@link VerificationPolicy#verify(Macaroon, byte[], Macaroon...)}.
+ * A failure tells the {@link Failure}, the macaroon and the index of the caveat in its {@link Macaroon#caveatPackets},
+ * which isn't satisfied or whose discharge macaroon couldn't be verified.
+ * The human readable message is only built, when {@link #getMessage()} is called.
+ * Instances are immutable.
+ */
+public final class VerificationResult {
+
+  /**
+   * Why a macaroon isn't valid.
+   */
+  public enum Failure {
+    /**
+     * A first party caveat is satisfied neither exactly nor by a general verifier.
+     */
+    CAVEAT_NOT_SATISFIED,
+    /**
+     * There's no discharge macaroon for a third party caveat.
+     */
+    DISCHARGE_MISSING,
+    /**
+     * The discharge macaroon of a third party caveat isn't valid or not bound to the macaroon.
+     */
+    DISCHARGE_INVALID,
+    /**
+     * The signature doesn't match, the secret is wrong or the macaroon was tampered with.
+     */
+    SIGNATURE_MISMATCH,
+    /**
+     * The {@link SecretResolver} of a batch verification has no secret for the macaroon.
+     */
+    SECRET_UNKNOWN,
+    /**
+     * Two different discharge macaroons have the same identifier, so it's ambiguous which one discharges a caveat.
+     */
+    DISCHARGE_DUPLICATE
+  }
+
+  static final VerificationResult VALID = new VerificationResult(null, null, -1);
+
+  private final Failure failure;
+  private final Macaroon macaroon;
+  private final int caveatIndex;
+
+  private VerificationResult(Failure failure, Macaroon macaroon, int caveatIndex) {
+    this.failure = failure;
+    this.macaroon = macaroon;
+    this.caveatIndex = caveatIndex;
+  }
+
+  static VerificationResult failure(Failure failure, Macaroon macaroon, int caveatIndex) {
+    return new VerificationResult(failure, macaroon, caveatIndex);
+  }
+
+  /**
+   * @return true, if the macaroon is valid
+   */
+  public boolean isValid() {
+    return failure == null;
+  }
+
+  /**
+   * @return why the macaroon isn't valid, null if valid
+   */
+  public Failure getFailure() {
+    return failure;
+  }
+
+  /**
+   * @return the macaroon, which isn't valid, null if valid
+   */
+  public Macaroon getMacaroon() {
+    return macaroon;
+  }
+
+  /**
+   * @return index of the failed caveat in {@link Macaroon#caveatPackets} of {@link #getMacaroon()},
+   * -1 if valid or if the failure isn't caused by a single caveat ({@link Failure#SIGNATURE_MISMATCH}, {@link Failure#SECRET_UNKNOWN}, {@link Failure#DISCHARGE_DUPLICATE})
+   */
+  public int getCaveatIndex() {
+    return caveatIndex;
+  }
+
+  /**
+   * @return a new human readable message, null if valid
+   */
+  public String getMessage() {
+    if (failure == null) {
+      return null;
+    }
+    switch (failure) {
+      case CAVEAT_NOT_SATISFIED:
+        return "Caveat isn't satisfied: " + caveat();
+      case DISCHARGE_MISSING:
+        return "Couldn't verify 3rd party macaroon, because no discharged macaroon was provided to the verifier, identifier= " + caveat();
+      case DISCHARGE_INVALID:
+        return "Couldn't verify 3rd party macaroon, identifier= " + caveat();
+      case SECRET_UNKNOWN:
+        return "No secret found for the macaroon, identifier= " + macaroon.identifier;
+      case DISCHARGE_DUPLICATE:
+        return "Another discharge macaroon with the same identifier is bound already, identifier= " + macaroon.identifier;
+      default:
+        return "Verification failed. Signature doesn't match. Maybe the key was wrong OR some caveats aren't satisfied.";
+    }
+  }
+
+  private String caveat() {
+    return macaroon.caveatPackets[caveatIndex].getValueAsText();
+  }
+
+  @Override
+  public String toString() {
+    return failure == null ? "VerificationResult{valid}" : "VerificationResult{failure=" + failure + ", caveatIndex=" + caveatIndex + "}";
+  }
+}
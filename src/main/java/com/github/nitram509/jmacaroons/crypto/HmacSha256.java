@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons.crypto;
+
+import java.util.Arrays;
+
+/**
+ * A pure Java HMAC-SHA256 (RFC 2104, FIPS 180-4) for the short keys and messages of macaroons.
+ * It's allocation free, but slower than {@link javax.crypto.Mac} on JDKs with SHA-256 intrinsics,
+ * e.g. about 4 times slower when verifying a macaroon with 50 caveats, see benchmarks/README.md.
+ * The SHA-256 states after the inner and outer padded key blocks are computed once per {@link #init(byte[])},
+ * so {@link #doFinal(byte[], int)} only has to process the message and the outer hash.
+ * All buffers are fixed size and allocated once per instance, there's no allocation per HMAC.
+ * Like {@link javax.crypto.Mac}, an instance is not thread-safe and resets to the keyed state after each
+ * {@link #doFinal(byte[], int)}.
+ */
+public final class HmacSha256 {
+
+  public static final int HASH_BYTES = 32;
+  public static final int BLOCK_BYTES = 64;
+
+  private static final int[] K = {
+      0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+      0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+      0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+      0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+      0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+      0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+      0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+      0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+  };
+
+  private static final int[] IV = {
+      0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+  };
+
+  private final int[] innerState = new int[8];
+  private final int[] outerState = new int[8];
+  private final int[] state = new int[8];
+  private final int[] w = new int[64];
+  private final byte[] block = new byte[BLOCK_BYTES];
+  private final byte[] paddedKey = new byte[BLOCK_BYTES];
+  private int blockLength;
+  private long processedBytes;
+  private boolean initialized;
+
+  /**
+   * @param key key of any length, keys longer than {@link #BLOCK_BYTES} are hashed first
+   */
+  public void init(byte[] key) {
+    init(key, 0, key.length);
+  }
+
+  /**
+   * @param key    key of any length, keys longer than {@link #BLOCK_BYTES} are hashed first
+   * @param offset offset of the key
+   * @param length length of the key
+   */
+  public void init(byte[] key, int offset, int length) {
+    if (length > BLOCK_BYTES) {
+      // the hashed key is kept in the block buffer
+      System.arraycopy(IV, 0, state, 0, 8);
+      resetMessage();
+      update(key, offset, length);
+      finish(block, 0);
+      key = block;
+      offset = 0;
+      length = HASH_BYTES;
+    }
+    padKey(key, offset, length, (byte) 0x36, innerState);
+    padKey(key, offset, length, (byte) 0x5c, outerState);
+    Arrays.fill(paddedKey, (byte) 0);
+    Arrays.fill(block, (byte) 0);
+    initialized = true;
+    reset();
+  }
+
+  public void update(byte[] message) {
+    update(message, 0, message.length);
+  }
+
+  public void update(byte[] message, int offset, int length) {
+    processedBytes += length;
+    if (blockLength > 0) {
+      int n = Math.min(length, BLOCK_BYTES - blockLength);
+      System.arraycopy(message, offset, block, blockLength, n);
+      blockLength += n;
+      offset += n;
+      length -= n;
+      if (blockLength < BLOCK_BYTES) {
+        return;
+      }
+      compress(block, 0);
+      blockLength = 0;
+    }
+    while (length >= BLOCK_BYTES) {
+      compress(message, offset);
+      offset += BLOCK_BYTES;
+      length -= BLOCK_BYTES;
+    }
+    System.arraycopy(message, offset, block, 0, length);
+    blockLength = length;
+  }
+
+  /**
+   * Writes the HMAC and resets this instance to the keyed state, so the next message can be processed.
+   *
+   * @param out       output buffer, at least {@link #HASH_BYTES} long starting at the offset
+   * @param outOffset offset of the output
+   */
+  public void doFinal(byte[] out, int outOffset) {
+    if (!initialized) {
+      throw new IllegalStateException("HmacSha256 not initialized");
+    }
+    // the inner hash is written to the start of the block, where the outer hash reads it
+    finish(block, 0);
+    // outer hash: H(K ^ opad || inner hash), the padded key block is already processed
+    System.arraycopy(outerState, 0, state, 0, 8);
+    processedBytes = BLOCK_BYTES + HASH_BYTES;
+    blockLength = HASH_BYTES;
+    finish(out, outOffset);
+    reset();
+  }
+
+  /**
+   * @param message message
+   * @return a new array with the HMAC
+   */
+  public byte[] doFinal(byte[] message) {
+    update(message, 0, message.length);
+    byte[] out = new byte[HASH_BYTES];
+    doFinal(out, 0);
+    return out;
+  }
+
+  /**
+   * Resets this instance to the keyed state, dropping any message processed so far.
+   */
+  public void reset() {
+    System.arraycopy(innerState, 0, state, 0, 8);
+    processedBytes = BLOCK_BYTES;
+    blockLength = 0;
+  }
+
+  private void resetMessage() {
+    processedBytes = 0;
+    blockLength = 0;
+  }
+
+  private void padKey(byte[] key, int offset, int length, byte pad, int[] padState) {
+    for (int i = 0; i < BLOCK_BYTES; i++) {
+      paddedKey[i] = (byte) ((i < length ? key[offset + i] : 0) ^ pad);
+    }
+    System.arraycopy(IV, 0, state, 0, 8);
+    compress(paddedKey, 0);
+    System.arraycopy(state, 0, padState, 0, 8);
+  }
+
+  /**
+   * Pads the buffered message in {@link #block} and writes the digest of {@link #state}.
+   * The message bytes to finish must already be in {@link #block} (up to {@link #blockLength}).
+   */
+  private void finish(byte[] out, int outOffset) {
+    long bitLength = processedBytes << 3;
+    block[blockLength++] = (byte) 0x80;
+    if (blockLength > BLOCK_BYTES - 8) {
+      Arrays.fill(block, blockLength, BLOCK_BYTES, (byte) 0);
+      compress(block, 0);
+      blockLength = 0;
+    }
+    Arrays.fill(block, blockLength, BLOCK_BYTES - 8, (byte) 0);
+    for (int i = 0; i < 8; i++) {
+      block[BLOCK_BYTES - 1 - i] = (byte) (bitLength >>> (8 * i));
+    }
+    compress(block, 0);
+    for (int i = 0; i < 8; i++) {
+      int v = state[i];
+      out[outOffset + 4 * i] = (byte) (v >>> 24);
+      out[outOffset + 4 * i + 1] = (byte) (v >>> 16);
+      out[outOffset + 4 * i + 2] = (byte) (v >>> 8);
+      out[outOffset + 4 * i + 3] = (byte) v;
+    }
+  }
+
+  private void compress(byte[] in, int offset) {
+    int[] w = this.w;
+    for (int i = 0; i < 16; i++, offset += 4) {
+      w[i] = (in[offset] << 24) | ((in[offset + 1] & 0xff) << 16) | ((in[offset + 2] & 0xff) << 8) | (in[offset + 3] & 0xff);
+    }
+    for (int i = 16; i < 64; i++) {
+      int w15 = w[i - 15];
+      int w2 = w[i - 2];
+      int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+      int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+      w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+    }
+    int[] h = this.state;
+    int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+    for (int i = 0; i < 64; i++) {
+      int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+      int ch = (e & f) ^ (~e & g);
+      int t1 = hh + s1 + ch + K[i] + w[i];
+      int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+      int maj = (a & b) ^ (a & c) ^ (b & c);
+      int t2 = s0 + maj;
+      hh = g;
+      g = f;
+      f = e;
+      e = d + t1;
+      d = c;
+      c = b;
+      b = a;
+      a = t1 + t2;
+    }
+    h[0] += a;
+    h[1] += b;
+    h[2] += c;
+    h[3] += d;
+    h[4] += e;
+    h[5] += f;
+    h[6] += g;
+    h[7] += hh;
+  }
+}
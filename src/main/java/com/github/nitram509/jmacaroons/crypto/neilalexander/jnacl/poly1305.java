@@ -25,141 +25,160 @@
 //  POSSIBILITY OF SUCH DAMAGE.
 //
 
+
 package com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl;
 
+import java.util.Arrays;
+
+/**
+ * Poly1305 with five 26-bit limbs (like poly1305-donna-32), the products are computed in 64-bit longs.
+ * There are no branches or table lookups depending on key or message content, and no allocation per call.
+ */
 public class poly1305 {
   final int CRYPTO_BYTES = 16;
   final int CRYPTO_KEYBYTES = 32;
 
-  static final int[] minusp = {5, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 252};
+  private static final int MASK26 = 0x3ffffff;
+
+  /**
+   * Scratch buffer of the current thread for the tag to verify, cleared after each use.
+   */
+  private static final ThreadLocal<byte[]> TAG = ThreadLocal.withInitial(() -> new byte[16]);
 
   public static int crypto_onetimeauth_verify(byte[] h, int hoffset, byte[] inv, int invoffset, long inlen, byte[] k) {
-    byte[] correct = new byte[16];
+    byte[] correct = TAG.get();
 
     crypto_onetimeauth(correct, 0, inv, invoffset, inlen, k);
-    return verify_16.crypto_verify(h, hoffset, correct);
+    int result = verify_16.crypto_verify(h, hoffset, correct);
+    Arrays.fill(correct, (byte) 0);
+    return result;
   }
 
-  static void add(int[] h, int[] c) {
-    int j;
-    int u = 0;
-
-    for (j = 0; j < 17; ++j) {
-      u += h[j] + c[j];
-      h[j] = u & 255;
-      u >>>= 8;
-    }
+  static int load_littleendian(byte[] x, int offset) {
+    return (x[offset] & 0xff)
+        | ((x[offset + 1] & 0xff) << 8)
+        | ((x[offset + 2] & 0xff) << 16)
+        | ((x[offset + 3] & 0xff) << 24);
   }
 
-  static void squeeze(int[] h) {
-    int u = 0;
-
-    for (int j = 0; j < 16; ++j) {
-      u += h[j];
-      h[j] = u & 255;
-      u >>>= 8;
-    }
-
-    u += h[16];
-    h[16] = u & 3;
-    u = 5 * (u >>> 2);
-
-    for (int j = 0; j < 16; ++j) {
-      u += h[j];
-      h[j] = u & 255;
-      u >>>= 8;
-    }
-
-    u += h[16];
-    h[16] = u;
+  static void store_littleendian(byte[] x, int offset, int u) {
+    x[offset] = (byte) u;
+    x[offset + 1] = (byte) (u >>> 8);
+    x[offset + 2] = (byte) (u >>> 16);
+    x[offset + 3] = (byte) (u >>> 24);
   }
 
-  static void freeze(int[] h) {
-    int[] horig = new int[17];
-
-    for (int j = 0; j < 17; ++j)
-      horig[j] = h[j];
-
-    add(h, minusp);
-
-    int negative = (int) (-(h[16] >>> 7));
-
-    for (int j = 0; j < 17; ++j)
-      h[j] ^= negative & (horig[j] ^ h[j]);
-  }
-
-  static void mulmod(int[] h, int[] r) {
-    int[] hr = new int[17];
-
-    for (int i = 0; i < 17; ++i) {
-      int u = 0;
-
-      for (int j = 0; j <= i; ++j)
-        u += h[j] * r[i - j];
-
-      for (int j = i + 1; j < 17; ++j)
-        u += 320 * h[j] * r[i + 17 - j];
-
-      hr[i] = u;
+  /**
+   * The 32-bit word at index i of the last, partial block of length len, which is padded with 1 and zeros.
+   */
+  static int load_partial(byte[] x, int offset, int len, int i) {
+    int u = 0;
+    for (int j = 3; j >= 0; --j) {
+      int b = i + j < len ? x[offset + i + j] & 0xff : (i + j == len ? 1 : 0);
+      u = (u << 8) | b;
     }
-
-    for (int i = 0; i < 17; ++i)
-      h[i] = hr[i];
-
-    squeeze(h);
+    return u;
   }
 
   public static int crypto_onetimeauth(byte[] outv, int outvoffset, byte[] inv, int invoffset, long inlen, byte[] k) {
-    int j;
-    int[] r = new int[17];
-    int[] h = new int[17];
-    int[] c = new int[17];
-
-    r[0] = k[0] & 0xFF;
-    r[1] = k[1] & 0xFF;
-    r[2] = k[2] & 0xFF;
-    r[3] = k[3] & 15;
-    r[4] = k[4] & 252;
-    r[5] = k[5] & 0xFF;
-    r[6] = k[6] & 0xFF;
-    r[7] = k[7] & 15;
-    r[8] = k[8] & 252;
-    r[9] = k[9] & 0xFF;
-    r[10] = k[10] & 0xFF;
-    r[11] = k[11] & 15;
-    r[12] = k[12] & 252;
-    r[13] = k[13] & 0xFF;
-    r[14] = k[14] & 0xFF;
-    r[15] = k[15] & 15;
-    r[16] = 0;
-
-    for (j = 0; j < 17; ++j)
-      h[j] = 0;
+    // r &= 0xffffffc0ffffffc0ffffffc0fffffff
+    final int r0 = load_littleendian(k, 0) & 0x3ffffff;
+    final int r1 = (load_littleendian(k, 3) >>> 2) & 0x3ffff03;
+    final int r2 = (load_littleendian(k, 6) >>> 4) & 0x3ffc0ff;
+    final int r3 = (load_littleendian(k, 9) >>> 6) & 0x3f03fff;
+    final int r4 = (load_littleendian(k, 12) >>> 8) & 0x00fffff;
 
-    while (inlen > 0) {
-      for (j = 0; j < 17; ++j)
-        c[j] = 0;
+    final long s1 = r1 * 5L;
+    final long s2 = r2 * 5L;
+    final long s3 = r3 * 5L;
+    final long s4 = r4 * 5L;
 
-      for (j = 0; (j < 16) && (j < inlen); ++j)
-        c[j] = inv[invoffset + j] & 0xff;
+    int h0 = 0, h1 = 0, h2 = 0, h3 = 0, h4 = 0;
 
-      c[j] = 1;
-      invoffset += j;
-      inlen -= j;
-      add(h, c);
-      mulmod(h, r);
+    while (inlen > 0) {
+      int t0, t1, t2, t3, hibit;
+      if (inlen >= 16) {
+        t0 = load_littleendian(inv, invoffset);
+        t1 = load_littleendian(inv, invoffset + 4);
+        t2 = load_littleendian(inv, invoffset + 8);
+        t3 = load_littleendian(inv, invoffset + 12);
+        hibit = 1 << 24;
+        invoffset += 16;
+        inlen -= 16;
+      } else {
+        int len = (int) inlen;
+        t0 = load_partial(inv, invoffset, len, 0);
+        t1 = load_partial(inv, invoffset, len, 4);
+        t2 = load_partial(inv, invoffset, len, 8);
+        t3 = load_partial(inv, invoffset, len, 12);
+        hibit = 0;
+        inlen = 0;
+      }
+
+      // h += m
+      h0 += t0 & MASK26;
+      h1 += ((t0 >>> 26) | (t1 << 6)) & MASK26;
+      h2 += ((t1 >>> 20) | (t2 << 12)) & MASK26;
+      h3 += ((t2 >>> 14) | (t3 << 18)) & MASK26;
+      h4 += (t3 >>> 8) | hibit;
+
+      // h *= r
+      long d0 = h0 * (long) r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+      long d1 = h0 * (long) r1 + h1 * (long) r0 + h2 * s4 + h3 * s3 + h4 * s2;
+      long d2 = h0 * (long) r2 + h1 * (long) r1 + h2 * (long) r0 + h3 * s4 + h4 * s3;
+      long d3 = h0 * (long) r3 + h1 * (long) r2 + h2 * (long) r1 + h3 * (long) r0 + h4 * s4;
+      long d4 = h0 * (long) r4 + h1 * (long) r3 + h2 * (long) r2 + h3 * (long) r1 + h4 * (long) r0;
+
+      // partial h %= p
+      long c;
+      c = d0 >>> 26; h0 = (int) d0 & MASK26;
+      d1 += c; c = d1 >>> 26; h1 = (int) d1 & MASK26;
+      d2 += c; c = d2 >>> 26; h2 = (int) d2 & MASK26;
+      d3 += c; c = d3 >>> 26; h3 = (int) d3 & MASK26;
+      d4 += c; c = d4 >>> 26; h4 = (int) d4 & MASK26;
+      h0 += (int) c * 5; h1 += h0 >>> 26; h0 &= MASK26;
     }
 
-    freeze(h);
-
-    for (j = 0; j < 16; ++j)
-      c[j] = k[j + 16] & 0xFF;
-
-    c[16] = 0;
-    add(h, c);
-
-    for (j = 0; j < 16; ++j)
-      outv[j + outvoffset] = (byte) h[j];
+    // fully carry h
+    int c;
+    c = h1 >>> 26; h1 &= MASK26;
+    h2 += c; c = h2 >>> 26; h2 &= MASK26;
+    h3 += c; c = h3 >>> 26; h3 &= MASK26;
+    h4 += c; c = h4 >>> 26; h4 &= MASK26;
+    h0 += c * 5; c = h0 >>> 26; h0 &= MASK26;
+    h1 += c;
+
+    // g = h + -p
+    int g0 = h0 + 5; c = g0 >>> 26; g0 &= MASK26;
+    int g1 = h1 + c; c = g1 >>> 26; g1 &= MASK26;
+    int g2 = h2 + c; c = g2 >>> 26; g2 &= MASK26;
+    int g3 = h3 + c; c = g3 >>> 26; g3 &= MASK26;
+    int g4 = h4 + c - (1 << 26);
+
+    // select h if h < p, or g if h >= p, without branching
+    int mask = (g4 >>> 31) - 1;
+    h0 = (h0 & ~mask) | (g0 & mask);
+    h1 = (h1 & ~mask) | (g1 & mask);
+    h2 = (h2 & ~mask) | (g2 & mask);
+    h3 = (h3 & ~mask) | (g3 & mask);
+    h4 = (h4 & ~mask) | (g4 & mask);
+
+    // h = h % 2^128
+    h0 = h0 | (h1 << 26);
+    h1 = (h1 >>> 6) | (h2 << 20);
+    h2 = (h2 >>> 12) | (h3 << 14);
+    h3 = (h3 >>> 18) | (h4 << 8);
+
+    // tag = (h + s) % 2^128
+    long f;
+    f = (h0 & 0xffffffffL) + (load_littleendian(k, 16) & 0xffffffffL);
+    store_littleendian(outv, outvoffset, (int) f);
+    f = (h1 & 0xffffffffL) + (load_littleendian(k, 20) & 0xffffffffL) + (f >>> 32);
+    store_littleendian(outv, outvoffset + 4, (int) f);
+    f = (h2 & 0xffffffffL) + (load_littleendian(k, 24) & 0xffffffffL) + (f >>> 32);
+    store_littleendian(outv, outvoffset + 8, (int) f);
+    f = (h3 & 0xffffffffL) + (load_littleendian(k, 28) & 0xffffffffL) + (f >>> 32);
+    store_littleendian(outv, outvoffset + 12, (int) f);
 
     return 0;
   }
@@ -25,8 +25,11 @@
 //  POSSIBILITY OF SUCH DAMAGE.
 //
 
+
 package com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl;
 
+import java.util.Arrays;
+
 public class salsa20
 {
 	final int crypto_core_salsa20_ref_OUTPUTBYTES = 64;
@@ -38,7 +41,14 @@ public class salsa20
 
 	final static int ROUNDS = 20;
 
-	static long rotate(int u, int c)
+	/**
+	 * Scratch state of the current thread, so there's no allocation per call:
+	 * the 16 input words, followed by the 16 output words of a block.
+	 * It's cleared after each call, because it holds key material.
+	 */
+	static final ThreadLocal<int[]> STATE = ThreadLocal.withInitial(() -> new int[32]);
+
+	static int rotate(int u, int c)
 	{
 		return (u << c) | (u >>> (32 - c));
 	}
@@ -59,30 +69,41 @@ public class salsa20
 		x[offset + 3] = (byte) u;
 	}
 
-	public static int crypto_core(byte[] outv, byte[] inv, byte[] k, byte[] c)
+	/**
+	 * Loads constant, key and input as the 16 input words into state[0..16].
+	 * The input may be null for zeros.
+	 */
+	static void load(int[] state, byte[] inv, int inoffset, byte[] k, byte[] c)
 	{
-		int x0, x1, x2, x3, x4, x5, x6, x7, x8, x9, x10, x11, x12, x13, x14, x15;
-		int j0, j1, j2, j3, j4, j5, j6, j7, j8, j9, j10, j11, j12, j13, j14, j15;
-		int i;
-
-		j0 = x0 = load_littleendian(c, 0);
-		j1 = x1 = load_littleendian(k, 0);
-		j2 = x2 = load_littleendian(k, 4);
-		j3 = x3 = load_littleendian(k, 8);
-		j4 = x4 = load_littleendian(k, 12);
-		j5 = x5 = load_littleendian(c, 4);
-		j6 = x6 = load_littleendian(inv, 0);
-		j7 = x7 = load_littleendian(inv, 4);
-		j8 = x8 = load_littleendian(inv, 8);
-		j9 = x9 = load_littleendian(inv, 12);
-		j10 = x10 = load_littleendian(c, 8);
-		j11 = x11 = load_littleendian(k, 16);
-		j12 = x12 = load_littleendian(k, 20);
-		j13 = x13 = load_littleendian(k, 24);
-		j14 = x14 = load_littleendian(k, 28);
-		j15 = x15 = load_littleendian(c, 12);
-
-		for (i = ROUNDS; i > 0; i -= 2)
+		state[0] = load_littleendian(c, 0);
+		state[1] = load_littleendian(k, 0);
+		state[2] = load_littleendian(k, 4);
+		state[3] = load_littleendian(k, 8);
+		state[4] = load_littleendian(k, 12);
+		state[5] = load_littleendian(c, 4);
+		state[6] = inv != null ? load_littleendian(inv, inoffset) : 0;
+		state[7] = inv != null ? load_littleendian(inv, inoffset + 4) : 0;
+		state[8] = inv != null ? load_littleendian(inv, inoffset + 8) : 0;
+		state[9] = inv != null ? load_littleendian(inv, inoffset + 12) : 0;
+		state[10] = load_littleendian(c, 8);
+		state[11] = load_littleendian(k, 16);
+		state[12] = load_littleendian(k, 20);
+		state[13] = load_littleendian(k, 24);
+		state[14] = load_littleendian(k, 28);
+		state[15] = load_littleendian(c, 12);
+	}
+
+	/**
+	 * state[16..32] = the rounds of state[0..16], without the final addition of the input.
+	 */
+	static void rounds(int[] state)
+	{
+		int x0 = state[0], x1 = state[1], x2 = state[2], x3 = state[3];
+		int x4 = state[4], x5 = state[5], x6 = state[6], x7 = state[7];
+		int x8 = state[8], x9 = state[9], x10 = state[10], x11 = state[11];
+		int x12 = state[12], x13 = state[13], x14 = state[14], x15 = state[15];
+
+		for (int i = ROUNDS; i > 0; i -= 2)
 		{
 			x4 ^= rotate(x0 + x12, 7);
 			x8 ^= rotate(x4 + x0, 9);
@@ -118,133 +139,114 @@ public class salsa20
 			x15 ^= rotate(x14 + x13, 18);
 		}
 
-		x0 += j0;
-		x1 += j1;
-		x2 += j2;
-		x3 += j3;
-		x4 += j4;
-		x5 += j5;
-		x6 += j6;
-		x7 += j7;
-		x8 += j8;
-		x9 += j9;
-		x10 += j10;
-		x11 += j11;
-		x12 += j12;
-		x13 += j13;
-		x14 += j14;
-		x15 += j15;
-
-		store_littleendian(outv, 0, x0);
-		store_littleendian(outv, 4, x1);
-		store_littleendian(outv, 8, x2);
-		store_littleendian(outv, 12, x3);
-		store_littleendian(outv, 16, x4);
-		store_littleendian(outv, 20, x5);
-		store_littleendian(outv, 24, x6);
-		store_littleendian(outv, 28, x7);
-		store_littleendian(outv, 32, x8);
-		store_littleendian(outv, 36, x9);
-		store_littleendian(outv, 40, x10);
-		store_littleendian(outv, 44, x11);
-		store_littleendian(outv, 48, x12);
-		store_littleendian(outv, 52, x13);
-		store_littleendian(outv, 56, x14);
-		store_littleendian(outv, 60, x15);
+		state[16] = x0;
+		state[17] = x1;
+		state[18] = x2;
+		state[19] = x3;
+		state[20] = x4;
+		state[21] = x5;
+		state[22] = x6;
+		state[23] = x7;
+		state[24] = x8;
+		state[25] = x9;
+		state[26] = x10;
+		state[27] = x11;
+		state[28] = x12;
+		state[29] = x13;
+		state[30] = x14;
+		state[31] = x15;
+	}
 
-		return 0;
+	/**
+	 * state[16..32] = salsa20(state[0..16])
+	 */
+	static void core(int[] state)
+	{
+		rounds(state);
+		for (int i = 0; i < 16; ++i)
+			state[16 + i] += state[i];
 	}
-	
-	public static int crypto_stream(byte[] c, int clen, byte[] n, int noffset, byte[] k)
+
+	public static int crypto_core(byte[] outv, byte[] inv, byte[] k, byte[] c)
 	{
-		byte[] inv = new byte[16];
-		byte[] block = new byte[64];
-		
-		int coffset = 0;
-		
-		if (clen == 0)
-			return 0;
+		int[] state = STATE.get();
+
+		load(state, inv, 0, k, c);
+		core(state);
+		for (int i = 0; i < 16; ++i)
+			store_littleendian(outv, 4 * i, state[16 + i]);
 
-		for (int i = 0; i < 8; ++i)
-			inv[i] = n[noffset + i];
-		
-		for (int i = 8; i < 16; ++i)
-			inv[i] = 0;
+		Arrays.fill(state, 0);
+		return 0;
+	}
 
-		while (clen >= 64)
-		{		
-			salsa20.crypto_core(c, inv, k, xsalsa20.sigma);
+	/**
+	 * c[coffset..coffset+len] = m[moffset..moffset+len] ^ stream, or the plain stream, if m is null.
+	 * state[0..16] must hold constant, key, nonce and the block counter state[8..10] to start with.
+	 * The state is cleared afterwards.
+	 */
+	static void stream_xor(int[] state, byte[] c, int coffset, byte[] m, int moffset, int len)
+	{
+		while (len >= 64)
+		{
+			core(state);
 
-			int u = 1;
-			
-			for (int i = 8; i < 16; ++i)
+			for (int i = 0; i < 16; ++i)
 			{
-				u += inv[i]&0xff;
-				inv[i] = (byte) u;
-				u >>>= 8;
+				int u = state[16 + i];
+				if (m != null)
+					u ^= load_littleendian(m, moffset + 4 * i);
+				store_littleendian(c, coffset + 4 * i, u);
 			}
 
-			clen -= 64;
+			if (++state[8] == 0)
+				++state[9];
+
+			len -= 64;
 			coffset += 64;
+			moffset += 64;
 		}
 
-		if (clen != 0)
-		{			
-			salsa20.crypto_core(block, inv, k, xsalsa20.sigma);
-			
-			for (int i = 0; i < clen; ++i)
-				c[coffset + i] = block[i];
+		if (len != 0)
+		{
+			core(state);
+			xor_block(state, 0, c, coffset, m, moffset, len);
 		}
-		
-		return 0;
+
+		Arrays.fill(state, 0);
+	}
+
+	/**
+	 * c[coffset..coffset+len] = m[moffset..moffset+len] ^ block[skip..skip+len], or the plain block, if m is null.
+	 * The block is the one computed into state[16..32], len must not exceed 64 - skip.
+	 */
+	static void xor_block(int[] state, int skip, byte[] c, int coffset, byte[] m, int moffset, int len)
+	{
+		for (int i = 0; i < len; ++i)
+		{
+			int j = skip + i;
+			byte u = (byte) (state[16 + (j >> 2)] >>> ((j & 3) << 3));
+			c[coffset + i] = m != null ? (byte) (m[moffset + i] ^ u) : u;
+		}
+	}
+
+	public static int crypto_stream(byte[] c, int clen, byte[] n, int noffset, byte[] k)
+	{
+		return crypto_stream_xor(c, null, clen, n, noffset, k);
 	}
 
 	public static int crypto_stream_xor(byte[] c, byte[] m, int mlen, byte[] n, int noffset, byte[] k)
 	{
-		byte[] inv = new byte[16];
-		byte[] block = new byte[64];
-		
-		int coffset = 0;
-		int moffset = 0;
-		
 		if (mlen == 0)
 			return 0;
 
-		for (int i = 0; i < 8; ++i)
-			inv[i] = n[noffset + i];
-		
-		for (int i = 8; i < 16; ++i)
-			inv[i] = 0;
-
-		while (mlen >= 64)
-		{			
-			salsa20.crypto_core(block, inv, k, xsalsa20.sigma);
-			
-			for (int i = 0; i < 64; ++i)
-				c[coffset + i] = (byte)(m[moffset + i] ^ block[i]);
-
-			int u = 1;
-			
-			for (int i = 8; i < 16; ++i)
-			{
-				u += inv[i]&0xff;
-				inv[i] = (byte) u;
-				u >>>= 8;
-			}
+		int[] state = STATE.get();
 
-			mlen -= 64;
-			coffset += 64;
-			moffset += 64;
-		}
+		load(state, null, 0, k, xsalsa20.sigma);
+		state[6] = load_littleendian(n, noffset);
+		state[7] = load_littleendian(n, noffset + 4);
+		stream_xor(state, c, 0, m, 0, mlen);
 
-		if (mlen != 0)
-		{
-			salsa20.crypto_core(block, inv, k, xsalsa20.sigma);
-			
-			for (int i = 0; i < mlen; ++i)
-				c[coffset + i] = (byte)(m[moffset + i] ^ block[i]);
-		}
-		
 		return 0;
 	}
 }
@@ -25,6 +25,7 @@
 //  POSSIBILITY OF SUCH DAMAGE.
 //
 
+
 package com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl;
 
 public class xsalsa20
@@ -39,17 +40,44 @@ public class xsalsa20
 	
 	public static int crypto_stream(byte[] c, int clen, byte[] n, byte[] k)
 	{
-		byte[] subkey = new byte[32];
-		
-		hsalsa20.crypto_core(subkey, n, k, sigma);
-		return salsa20.crypto_stream(c, clen, n, 16, subkey);
+		return stream_xor(c, 0, null, 0, clen, n, k);
 	}
 	
 	public static int crypto_stream_xor(byte[] c, byte[] m, long mlen, byte[] n, byte[] k)
 	{
-		byte[] subkey = new byte[32];
-		
-		hsalsa20.crypto_core(subkey, n, k, sigma);
-		return salsa20.crypto_stream_xor(c, m, (int) mlen, n, 16, subkey);
+		return stream_xor(c, 0, m, 0, (int) mlen, n, k);
+	}
+
+	/**
+	 * c[coffset..coffset+len] = m[moffset..moffset+len] ^ stream, or the plain stream, if m is null.
+	 * The subkey of hsalsa20 is kept in the int state, there's no allocation.
+	 */
+	static int stream_xor(byte[] c, int coffset, byte[] m, int moffset, int len, byte[] n, byte[] k)
+	{
+		int[] state = salsa20.STATE.get();
+
+		setup(state, n, 0, k);
+		salsa20.stream_xor(state, c, coffset, m, moffset, len);
+		return 0;
+	}
+
+	/**
+	 * Sets up state[0..16] for the salsa20 stream of key k and the 24 byte nonce n[noffset..], starting at block 0.
+	 */
+	static void setup(int[] state, byte[] n, int noffset, byte[] k)
+	{
+		salsa20.load(state, n, noffset, k, sigma);
+		salsa20.rounds(state);
+
+		// the subkey replaces the key, the constants stay the same
+		for (int i = 0; i < 4; ++i)
+		{
+			state[1 + i] = state[16 + hsalsa20.OUTPUT_WORDS[i]];
+			state[11 + i] = state[16 + hsalsa20.OUTPUT_WORDS[4 + i]];
+		}
+		state[6] = salsa20.load_littleendian(n, noffset + 16);
+		state[7] = salsa20.load_littleendian(n, noffset + 20);
+		state[8] = 0;
+		state[9] = 0;
 	}
 }
@@ -27,6 +27,8 @@
 
 package com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl;
 
+import java.util.Arrays;
+
 public class xsalsa20poly1305
 {
 	final int crypto_secretbox_KEYBYTES = 32;
@@ -34,13 +36,19 @@ public class xsalsa20poly1305
 	final int crypto_secretbox_ZEROBYTES = 32;
 	final int crypto_secretbox_BOXZEROBYTES = 16;
 
+	public static final int crypto_secretbox_MACBYTES = 16;
+
+	/**
+	 * Scratch buffer of the current thread for the one-time Poly1305 key, cleared after each use.
+	 */
+	private static final ThreadLocal<byte[]> AUTH_KEY = ThreadLocal.withInitial(() -> new byte[32]);
+
 	static public int crypto_secretbox(byte[] c, byte[] m, long mlen, byte[] n, byte[] k)
 	{
 		if (mlen < 32)
 			return -1;
 
-		xsalsa20.crypto_stream_xor(c, m, mlen, n, k);
-		poly1305.crypto_onetimeauth(c, 16, c, 32, mlen - 32, c);
+		crypto_secretbox_easy(c, 16, m, 32, (int) mlen - 32, n, 0, k);
 		
 		for (int i = 0; i < 16; ++i)
 			c[i] = 0;
@@ -52,19 +60,101 @@ public class xsalsa20poly1305
 	{
 		if (clen < 32)
 			return -1;
-	
-		byte[] subkeyp = new byte[32];
-		
-		xsalsa20.crypto_stream(subkeyp, 32, n, k);
-		
-		if (poly1305.crypto_onetimeauth_verify(c, 16, c, 32, clen - 32, subkeyp) != 0)
+
+		if (crypto_secretbox_open_easy(m, 32, c, 16, (int) clen - 16, n, 0, k) != 0)
 			return -1;
 		
-		xsalsa20.crypto_stream_xor(m, c, clen, n, k);
-		
 		for (int i = 0; i < 32; ++i)
 			m[i] = 0;
 		
 		return 0;
 	}
+
+	/**
+	 * Like crypto_secretbox, without the zero padding: c[coffset..coffset+16+mlen] gets the 16 byte tag,
+	 * followed by the encrypted m[moffset..moffset+mlen]. The nonce are the 24 bytes at n[noffset..].
+	 * c may be the same array as m or n and may overlap them at any offset,
+	 * in place (coffset+16 == moffset) or in front of m it's done without a copy of m.
+	 *
+	 * @return 0
+	 */
+	public static int crypto_secretbox_easy(byte[] c, int coffset, byte[] m, int moffset, int mlen, byte[] n, int noffset, byte[] k)
+	{
+		if (c == m && overlapsAhead(coffset + crypto_secretbox_MACBYTES, moffset, mlen))
+		{
+			m = Arrays.copyOfRange(m, moffset, moffset + mlen);
+			moffset = 0;
+		}
+		int[] state = salsa20.STATE.get();
+		byte[] authKey = AUTH_KEY.get();
+
+		xsalsa20.setup(state, n, noffset, k);
+		salsa20.core(state);
+		// the first 32 bytes of the stream are the Poly1305 key, the message is encrypted with the rest
+		salsa20.xor_block(state, 0, authKey, 0, null, 0, 32);
+		salsa20.xor_block(state, 32, c, coffset + crypto_secretbox_MACBYTES, m, moffset, Math.min(mlen, 32));
+		if (mlen > 32)
+		{
+			state[8] = 1;
+			salsa20.stream_xor(state, c, coffset + crypto_secretbox_MACBYTES + 32, m, moffset + 32, mlen - 32);
+		}
+		Arrays.fill(state, 0);
+
+		poly1305.crypto_onetimeauth(c, coffset, c, coffset + crypto_secretbox_MACBYTES, mlen, authKey);
+		Arrays.fill(authKey, (byte) 0);
+		return 0;
+	}
+
+	/**
+	 * Opens what {@link #crypto_secretbox_easy} sealed: c[coffset..coffset+clen] is the 16 byte tag followed by the ciphertext,
+	 * m[moffset..moffset+clen-16] gets the plaintext, but only if the tag is authentic.
+	 * m may be the same array as c or n and may overlap them at any offset,
+	 * in place (moffset == coffset+16) or in front of c it's done without a copy of c.
+	 *
+	 * @return 0 on success, -1 if the ciphertext is too short or not authentic
+	 */
+	public static int crypto_secretbox_open_easy(byte[] m, int moffset, byte[] c, int coffset, int clen, byte[] n, int noffset, byte[] k)
+	{
+		if (clen < crypto_secretbox_MACBYTES)
+			return -1;
+
+		int[] state = salsa20.STATE.get();
+		byte[] authKey = AUTH_KEY.get();
+		int mlen = clen - crypto_secretbox_MACBYTES;
+
+		xsalsa20.setup(state, n, noffset, k);
+		salsa20.core(state);
+		salsa20.xor_block(state, 0, authKey, 0, null, 0, 32);
+		int verified = poly1305.crypto_onetimeauth_verify(c, coffset, c, coffset + crypto_secretbox_MACBYTES, mlen, authKey);
+		Arrays.fill(authKey, (byte) 0);
+		if (verified != 0)
+		{
+			Arrays.fill(state, 0);
+			return -1;
+		}
+
+		int cbody = coffset + crypto_secretbox_MACBYTES;
+		if (m == c && overlapsAhead(moffset, cbody, mlen))
+		{
+			c = Arrays.copyOfRange(c, cbody, cbody + mlen);
+			cbody = 0;
+		}
+		salsa20.xor_block(state, 32, m, moffset, c, cbody, Math.min(mlen, 32));
+		if (mlen > 32)
+		{
+			state[8] = 1;
+			salsa20.stream_xor(state, m, moffset + 32, c, cbody + 32, mlen - 32);
+		}
+		Arrays.fill(state, 0);
+		return 0;
+	}
+
+	/**
+	 * The stream is xored front to back, so the input is overwritten before it's read,
+	 * if the output starts behind the start of the input, but within the input.
+	 */
+	private static boolean overlapsAhead(int outoffset, int inoffset, int len)
+	{
+		return outoffset > inoffset && outoffset < inoffset + len;
+	}
 }
@@ -2,6 +2,9 @@
 
 package com.github.nitram509.jmacaroons.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.Arrays;
 
 /**
@@ -28,6 +31,7 @@ public class Base64 {
   private static final char[] alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
   private static final int[] decode = new int[128];
   private static final char pad = '=';
+  private static final int CHUNK_CHARS = 1024;
 
   static {
     Arrays.fill(decode, -1);
@@ -183,4 +187,93 @@ public class Base64 {
   public static String encodeUrlSafeToString(byte[] bytes) {
     return new String(encodeUrlSafe(bytes, false));
   }
+
+  /**
+   * Number of chars of the base64 encoding.
+   *
+   * @param length number of bytes to encode
+   * @param padded with padding
+   * @return number of chars
+   */
+  public static int encodedLength(int length, boolean padded) {
+    if (padded) return ((length + 2) / 3) << 2;
+    return (length / 3) * 4 + ((length % 3) == 0 ? 0 : (length % 3) + 1);
+  }
+
+  /**
+   * Encode bytes to base64 chars without padding, written directly to the Appendable.
+   *
+   * @param src Bytes to encode.
+   * @param out Destination of the encoded chars.
+   * @throws IOException if the Appendable does so.
+   */
+  public static void encodeUrlSafe(byte[] src, Appendable out) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).ensureCapacity(((StringBuilder) out).length() + encodedLength(src.length, false));
+    }
+    encodeUrlSafeInChunks(src, (chunk, len) -> append(out, chunk, len));
+  }
+
+  /**
+   * Encode bytes to base64 without padding, written directly to the stream as US-ASCII bytes.
+   *
+   * @param src Bytes to encode.
+   * @param out Destination of the encoded bytes.
+   * @throws IOException if the stream does so.
+   */
+  public static void encodeUrlSafe(byte[] src, OutputStream out) throws IOException {
+    byte[] bytes = new byte[Math.min(CHUNK_CHARS, encodedLength(src.length, false))];
+    encodeUrlSafeInChunks(src, (chunk, len) -> {
+      for (int i = 0; i < len; i++) {
+        bytes[i] = (byte) chunk[i];
+      }
+      out.write(bytes, 0, len);
+    });
+  }
+
+  private static void encodeUrlSafeInChunks(byte[] src, ChunkSink out) throws IOException {
+    char[] chunk = new char[Math.min(CHUNK_CHARS, encodedLength(src.length, false))];
+    int len = src.length;
+    int blocks = (len / 3) * 3;
+    int si = 0, ci = 0;
+
+    while (si < blocks) {
+      int n = (src[si++] & 0xff) << 16 | (src[si++] & 0xff) << 8 | (src[si++] & 0xff);
+      chunk[ci++] = alphabet[(n >>> 18) & 0x3f];
+      chunk[ci++] = alphabet[(n >>> 12) & 0x3f];
+      chunk[ci++] = alphabet[(n >>> 6) & 0x3f];
+      chunk[ci++] = alphabet[n & 0x3f];
+      if (ci > chunk.length - 4) {
+        out.write(chunk, ci);
+        ci = 0;
+      }
+    }
+
+    int tail = len - blocks;
+    if (tail > 0) {
+      int n = (src[si] & 0xff) << 10;
+      if (tail == 2) n |= (src[++si] & 0xff) << 2;
+
+      chunk[ci++] = alphabet[(n >>> 12) & 0x3f];
+      chunk[ci++] = alphabet[(n >>> 6) & 0x3f];
+      if (tail == 2) chunk[ci++] = alphabet[n & 0x3f];
+    }
+    out.write(chunk, ci);
+  }
+
+  private interface ChunkSink {
+    void write(char[] chunk, int len) throws IOException;
+  }
+
+  private static void append(Appendable out, char[] chars, int len) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(chars, 0, len);
+    } else if (out instanceof Writer) {
+      ((Writer) out).write(chars, 0, len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        out.append(chars[i]);
+      }
+    }
+  }
 }
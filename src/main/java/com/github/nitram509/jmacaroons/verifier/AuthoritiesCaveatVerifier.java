@@ -67,4 +67,8 @@ public class AuthoritiesCaveatVerifier implements GeneralCaveatVerifier {
     return result;
   }
 
+  @Override
+  public String getCaveatPrefix() {
+    return CAVEAT_PREFIX;
+  }
 }
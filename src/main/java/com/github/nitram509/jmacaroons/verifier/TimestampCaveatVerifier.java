@@ -73,25 +73,32 @@ public class TimestampCaveatVerifier implements GeneralCaveatVerifier {
   public static final String CAVEAT_PREFIX = "time < ";
   public static final int CAVEAT_PREFIX_LEN = CAVEAT_PREFIX.length();
 
-  private SimpleDateFormat ISO_DateFormat_DAY = new SimpleDateFormat("yyyy-MM-dd");
-  private SimpleDateFormat ISO_DateFormat_HOUR = new SimpleDateFormat("yyyy-MM-dd'T'HH");
-  private SimpleDateFormat ISO_DateFormat_MINUTE = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
-  private SimpleDateFormat ISO_DateFormat_SECOND = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-  private SimpleDateFormat ISO_DateFormat_TIMEZONE = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX");
-  private SimpleDateFormat ISO_DateFormat_MILLIS_TIMEZONE = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX");
+  // SimpleDateFormat isn't thread-safe, thus every thread gets its own instances
+  private static final ThreadLocal<SimpleDateFormat[]> ISO_DATE_FORMATS = ThreadLocal.withInitial(() -> new SimpleDateFormat[]{
+      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX"),
+      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX"),
+      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss"),
+      new SimpleDateFormat("yyyy-MM-dd'T'HH:mm"),
+      new SimpleDateFormat("yyyy-MM-dd'T'HH"),
+      new SimpleDateFormat("yyyy-MM-dd")
+  });
 
   @Override
   public boolean verifyCaveat(String caveat) {
     if (caveat.startsWith(CAVEAT_PREFIX)) {
-      Date parsedDate = ISO_DateFormat_MILLIS_TIMEZONE.parse(caveat, new ParsePosition(CAVEAT_PREFIX_LEN));
-      if (parsedDate == null) parsedDate = ISO_DateFormat_TIMEZONE.parse(caveat, new ParsePosition(CAVEAT_PREFIX_LEN));
-      if (parsedDate == null) parsedDate = ISO_DateFormat_SECOND.parse(caveat, new ParsePosition(CAVEAT_PREFIX_LEN));
-      if (parsedDate == null) parsedDate = ISO_DateFormat_MINUTE.parse(caveat, new ParsePosition(CAVEAT_PREFIX_LEN));
-      if (parsedDate == null) parsedDate = ISO_DateFormat_HOUR.parse(caveat, new ParsePosition(CAVEAT_PREFIX_LEN));
-      if (parsedDate == null) parsedDate = ISO_DateFormat_DAY.parse(caveat, new ParsePosition(CAVEAT_PREFIX_LEN));
+      Date parsedDate = null;
+      for (SimpleDateFormat dateFormat : ISO_DATE_FORMATS.get()) {
+        parsedDate = dateFormat.parse(caveat, new ParsePosition(CAVEAT_PREFIX_LEN));
+        if (parsedDate != null) break;
+      }
       Date now = Calendar.getInstance().getTime();
       return parsedDate != null && now.before(parsedDate);
     }
     return false;
   }
+
+  @Override
+  public String getCaveatPrefix() {
+    return CAVEAT_PREFIX;
+  }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CompactMacaroonTest {
+
+  @DataProvider
+  public static Object[][] macaroons() {
+    String secret = "this is our super secret key; only we should know it";
+    return new Object[][]{
+        {Macaroon.create("http://mybank/", secret, "we used our secret key")},
+        {new Macaroon(null, "no location", new byte[MacaroonsConstants.MACAROON_HASH_BYTES])},
+        {Macaroon.builder("http://mybank/", secret, "we used our secret key")
+            .addCaveat("account = 3735928559")
+            .addCaveat("time < 2025-01-01T00:00")
+            .addCaveat("http://auth.mybank/", "this is another secret", "this was how we remind auth of key/pred")
+            .build()},
+    };
+  }
+
+  @Test(dataProvider = "macaroons")
+  public void compact_form_has_the_fields_of_the_macaroon(Macaroon macaroon) {
+    CompactMacaroon compact = CompactMacaroon.of(macaroon);
+
+    assertThat(compact.getLocation()).isEqualTo(macaroon.location);
+    assertThat(compact.getIdentifier()).isEqualTo(macaroon.identifier);
+    assertThat(compact.getSignature()).isEqualTo(macaroon.signature);
+    assertThat(compact.getSignatureBytes()).isEqualTo(macaroon.signatureBytes);
+    assertThat(compact.hasCaveats()).isEqualTo(macaroon.caveatPackets.length > 0);
+  }
+
+  @Test(dataProvider = "macaroons")
+  public void compact_form_round_trips(Macaroon macaroon) {
+    CompactMacaroon compact = CompactMacaroon.of(macaroon);
+
+    assertThat(compact.toMacaroon()).isEqualTo(macaroon);
+    assertThat(compact.serialize()).isEqualTo(macaroon.serialize(MacaroonsSerializer.V2));
+    assertThat(compact.serializeBinary()).isEqualTo(MacaroonsSerializer.V2.serializeBinary(macaroon));
+    assertThat(compact.serializedBinarySize()).isEqualTo(macaroon.serializedBinarySize(MacaroonsSerializer.V2));
+    assertThat(compact.toMacaroon().serialize(MacaroonsSerializer.V2)).isEqualTo(compact.serialize());
+  }
+
+  @Test(dataProvider = "macaroons")
+  public void caveat_packets_are_decoded_on_iteration(Macaroon macaroon) {
+    CompactMacaroon compact = CompactMacaroon.deserialize(macaroon.serialize(MacaroonsSerializer.V2));
+
+    List<CaveatPacket> packets = new ArrayList<>();
+    for (CaveatPacket packet : compact.getCaveatPackets()) {
+      packets.add(packet);
+    }
+
+    assertThat(compact.getCaveatPacketCount()).isEqualTo(macaroon.caveatPackets.length);
+    assertThat(packets).isEqualTo(Arrays.asList(macaroon.caveatPackets));
+  }
+
+  @Test
+  public void compact_form_does_not_memoize_the_binary_form_on_the_macaroon() {
+    Macaroon macaroon = Macaroon.builder("http://mybank/", "secret", "identifier")
+        .addCaveat("account = 3735928559")
+        .build();
+
+    CompactMacaroon compact = CompactMacaroon.of(macaroon);
+
+    assertThat(macaroon.serializedForms().binary(2)).isNull();
+    assertThat(compact.serializeBinary()).isEqualTo(MacaroonsSerializer.V2.serializeBinary(macaroon));
+  }
+
+  @Test
+  public void binary_form_is_deserialized() {
+    Macaroon macaroon = (Macaroon) macaroons()[2][0];
+    byte[] binary = MacaroonsSerializer.V2.serializeBinary(macaroon);
+
+    CompactMacaroon compact = CompactMacaroon.deserializeBinary(binary);
+    binary[binary.length - 1] ^= 1;
+
+    assertThat(compact.getIdentifier()).isEqualTo(macaroon.identifier);
+    assertThat(compact.toMacaroon()).isEqualTo(macaroon);
+  }
+
+  @Test(expectedExceptions = NotDeSerializableException.class)
+  public void truncated_macaroon_throws_NotDeSerializableException() {
+    byte[] binary = MacaroonsSerializer.V2.serializeBinary((Macaroon) macaroons()[2][0]);
+
+    CompactMacaroon.deserializeBinary(Arrays.copyOf(binary, binary.length - 1));
+  }
+
+  @Test(expectedExceptions = NotDeSerializableException.class)
+  public void V1_macaroon_throws_NotDeSerializableException() {
+    CompactMacaroon.deserialize(((Macaroon) macaroons()[0][0]).serialize(MacaroonsSerializer.V1));
+  }
+
+  @Test
+  public void equals_and_hashcode_are_overwritten() {
+    Macaroon macaroon = Macaroon.create("location", "secret", "identifier");
+    CompactMacaroon m1 = CompactMacaroon.of(macaroon);
+    CompactMacaroon m2 = CompactMacaroon.of(Macaroon.deserialize(macaroon.serialize()));
+
+    assertThat(m1).isEqualTo(m2);
+    assertThat(m1.hashCode()).isEqualTo(m2.hashCode());
+    assertThat(m1).isNotEqualTo(CompactMacaroon.of(Macaroon.create("location", "secret", "identifier2")));
+  }
+
+  @Test
+  public void serialized_signature_is_a_copy() {
+    CompactMacaroon compact = CompactMacaroon.of(Macaroon.create("location", "secret", "identifier"));
+    String signature = compact.getSignature();
+
+    compact.getSignatureBytes()[0] ^= 1;
+    compact.serializeBinary()[0] ^= 1;
+
+    assertThat(compact.getSignature()).isEqualTo(signature);
+  }
+
+  @Test(dataProvider = "macaroons")
+  public void java_serialization(Macaroon macaroon) throws Exception {
+    CompactMacaroon compact = CompactMacaroon.of(macaroon);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(compact);
+    }
+    CompactMacaroon copy;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (CompactMacaroon) in.readObject();
+    }
+
+    assertThat(copy).isEqualTo(compact);
+    assertThat(copy.getIdentifier()).isEqualTo(macaroon.identifier);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CryptoProvidersTest {
+
+  private static final String LOCATION = "http://mybank/";
+  private static final String SECRET = "this is a different super-secret key; never use the same secret twice";
+  private static final String IDENTIFIER = "we used our other secret key";
+  private static final String CAVEAT_KEY = "4; guaranteed random by a fair toss of the dice";
+
+  @AfterMethod
+  public void tearDown() {
+    CryptoProviders.set(null);
+  }
+
+  @Test
+  public void default_provider_is_used_without_service_registration() {
+    assertThat(CryptoProviders.get()).isSameAs(CryptoProviders.defaultProvider());
+  }
+
+  @Test
+  public void installed_provider_is_used_for_all_primitives() {
+    CountingCryptoProvider counting = new CountingCryptoProvider(CryptoProviders.defaultProvider());
+    CryptoProviders.set(counting);
+
+    Macaroon m = mint();
+    Macaroon d = Macaroon.builder("http://auth.mybank/", CAVEAT_KEY, "this was how we remind auth of key/pred").build();
+    Macaroon dp = Macaroon.builder(m).prepareForRequest(d).build();
+
+    assertThat(new MacaroonsVerifier(m)
+        .satisfyExact("account = 3735928559")
+        .satisfy3rdParty(dp)
+        .isValid(SECRET)).isTrue();
+    assertThat(counting.hmacs.get()).isGreaterThan(0);
+    assertThat(counting.seals.get()).isEqualTo(1);
+    assertThat(counting.opens.get()).isEqualTo(1);
+    assertThat(counting.randoms.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void pure_java_hmac_provider_mints_and_verifies_like_the_default() {
+    Macaroon m = mint();
+    Macaroon d = Macaroon.builder("http://auth.mybank/", CAVEAT_KEY, "this was how we remind auth of key/pred").build();
+    Macaroon dp = Macaroon.builder(m).prepareForRequest(d).build();
+    Macaroon firstParty = Macaroon.builder(LOCATION, SECRET, IDENTIFIER).addCaveat("account = 3735928559").build();
+
+    CryptoProviders.set(new PureJavaHmacCryptoProvider());
+
+    assertThat(HmacChain.get()).isSameAs(HmacChain.pureJava());
+    assertThat(Macaroon.builder(LOCATION, SECRET, IDENTIFIER).addCaveat("account = 3735928559").build()).isEqualTo(firstParty);
+    assertThat(new MacaroonsVerifier(m)
+        .satisfyExact("account = 3735928559")
+        .satisfy3rdParty(dp)
+        .isValid(SECRET)).isTrue();
+  }
+
+  @Test
+  public void reset_to_default() {
+    CryptoProviders.set(new CountingCryptoProvider(CryptoProviders.defaultProvider()));
+    CryptoProviders.set(null);
+
+    assertThat(CryptoProviders.get()).isSameAs(CryptoProviders.defaultProvider());
+  }
+
+  @Test
+  public void derived_keys_are_computed_by_installed_provider() {
+    CountingCryptoProvider counting = new CountingCryptoProvider(CryptoProviders.defaultProvider());
+    CryptoProviders.set(counting);
+
+    Macaroon m = Macaroon.builder(LOCATION, SECRET, IDENTIFIER).build();
+
+    assertThat(counting.hmacs.get()).isEqualTo(2);
+    assertThat(m.signature).isEqualTo(Macaroon.builder(LOCATION, SECRET, IDENTIFIER).build().signature);
+  }
+
+  private static Macaroon mint() {
+    return Macaroon.builder(LOCATION, SECRET, IDENTIFIER)
+        .addCaveat("account = 3735928559")
+        .addCaveat("http://auth.mybank/", CAVEAT_KEY, "this was how we remind auth of key/pred")
+        .build();
+  }
+
+  @Test
+  public void secretbox_round_trips_in_place_in_offset_buffer() {
+    // the default provider and the default methods of the interface, which CountingCryptoProvider doesn't override
+    for (CryptoProvider provider : new CryptoProvider[]{CryptoProviders.defaultProvider(), new CountingCryptoProvider(CryptoProviders.defaultProvider())}) {
+      Random random = new Random(42);
+      byte[] key = new byte[32];
+      random.nextBytes(key);
+      for (int length : new int[]{0, 1, 32, 33, 100}) {
+        byte[] plaintext = new byte[length];
+        random.nextBytes(plaintext);
+        byte[] expected = new byte[16 + length];
+        // nonce || tag || plaintext, at offset 5 of the buffer
+        byte[] buffer = new byte[5 + 24 + 16 + length + 3];
+        random.nextBytes(buffer);
+        System.arraycopy(plaintext, 0, buffer, 5 + 24 + 16, length);
+        assertThat(provider.secretbox(expected, 0, plaintext, 0, length, buffer, 5, key)).isEqualTo(0);
+
+        assertThat(provider.secretbox(buffer, 5 + 24, buffer, 5 + 24 + 16, length, buffer, 5, key)).isEqualTo(0);
+        assertThat(Arrays.copyOfRange(buffer, 5 + 24, 5 + 24 + 16 + length)).isEqualTo(expected);
+
+        assertThat(provider.secretboxOpen(buffer, 5 + 24 + 16, buffer, 5 + 24, 16 + length, buffer, 5, key)).isEqualTo(0);
+        assertThat(Arrays.copyOfRange(buffer, 5 + 24 + 16, 5 + 24 + 16 + length)).isEqualTo(plaintext);
+      }
+    }
+  }
+
+  private static class CountingCryptoProvider implements CryptoProvider {
+    private final CryptoProvider delegate;
+    private final AtomicInteger hmacs = new AtomicInteger();
+    private final AtomicInteger seals = new AtomicInteger();
+    private final AtomicInteger opens = new AtomicInteger();
+    private final AtomicInteger randoms = new AtomicInteger();
+
+    private CountingCryptoProvider(CryptoProvider delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void hmacSha256(byte[] key, byte[] message, int offset, int length, byte[] out, int outOffset) {
+      hmacs.incrementAndGet();
+      delegate.hmacSha256(key, message, offset, length, out, outOffset);
+    }
+
+    @Override
+    public int secretbox(byte[] ciphertext, byte[] plaintext, int length, byte[] nonce, byte[] key) {
+      seals.incrementAndGet();
+      return delegate.secretbox(ciphertext, plaintext, length, nonce, key);
+    }
+
+    @Override
+    public int secretboxOpen(byte[] plaintext, byte[] ciphertext, int length, byte[] nonce, byte[] key) {
+      opens.incrementAndGet();
+      return delegate.secretboxOpen(plaintext, ciphertext, length, nonce, key);
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+      randoms.incrementAndGet();
+      delegate.nextBytes(bytes);
+    }
+  }
+}
@@ -18,6 +18,10 @@ package com.github.nitram509.jmacaroons;
 
 import org.testng.annotations.Test;
 
+import java.nio.charset.StandardCharsets;
+
+import static com.github.nitram509.jmacaroons.CryptoTools.generate_derived_key;
+import static com.github.nitram509.jmacaroons.CryptoTools.macaroon_hmac;
 import static com.github.nitram509.jmacaroons.CryptoTools.string_to_bytes;
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -28,4 +32,12 @@ public class CryptoToolsTest {
     byte[] null_array = string_to_bytes(null);
     assertThat(null_array).isNull();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void derived_key_is_hmac_with_magic_key() throws Exception {
+    byte[] secret = string_to_bytes("this is our super secret key; only we should know it");
+    byte[] expected = macaroon_hmac("macaroons-key-generator".getBytes(StandardCharsets.UTF_8), secret);
+
+    assertThat(generate_derived_key(secret)).isEqualTo(expected);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DerivedKeyCacheTest {
+
+  @Test
+  public void cached_keys_are_returned_as_copies() {
+    DerivedKeyCache cache = new DerivedKeyCache(2);
+    byte[] derivedKey = {1, 2, 3};
+    cache.put(new byte[]{42}, derivedKey);
+
+    byte[] first = cache.get(new byte[]{42});
+    first[0] = 0;
+
+    assertThat(cache.get(new byte[]{42})).isEqualTo(new byte[]{1, 2, 3});
+    assertThat(cache.get(new byte[]{43})).isNull();
+  }
+
+  @Test
+  public void cache_is_bounded_and_evicts_least_recently_used() {
+    DerivedKeyCache cache = new DerivedKeyCache(2);
+    cache.put(new byte[]{1}, new byte[]{11});
+    cache.put(new byte[]{2}, new byte[]{22});
+    cache.get(new byte[]{1});
+    cache.put(new byte[]{3}, new byte[]{33});
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.get(new byte[]{1})).isEqualTo(new byte[]{11});
+    assertThat(cache.get(new byte[]{2})).isNull();
+    assertThat(cache.get(new byte[]{3})).isEqualTo(new byte[]{33});
+  }
+
+  @Test
+  public void cache_with_zero_capacity_stores_nothing() {
+    DerivedKeyCache cache = new DerivedKeyCache(0);
+    cache.put(new byte[]{1}, new byte[]{11});
+
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.get(new byte[]{1})).isNull();
+  }
+
+  @Test
+  public void clear_removes_all_keys() {
+    DerivedKeyCache cache = new DerivedKeyCache(2);
+    cache.put(new byte[]{1}, new byte[]{11});
+    cache.clear();
+
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.get(new byte[]{1})).isNull();
+  }
+}
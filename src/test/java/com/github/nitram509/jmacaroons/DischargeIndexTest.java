@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DischargeIndexTest {
+
+  private static final String LOCATION = "http://auth.mybank/";
+  private static final String KEY = "4; guaranteed random by a fair toss of the dice";
+
+  @Test
+  public void empty_index_finds_nothing() {
+    DischargeIndex index = DischargeIndex.of(Collections.<Macaroon>emptyList());
+
+    assertThat(index.get(bytes("discharge"))).isNull();
+    assertThat(index.macaroons()).isEmpty();
+  }
+
+  @Test
+  public void discharge_macaroons_are_found_by_identifier_bytes() {
+    List<Macaroon> discharges = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      discharges.add(Macaroon.create(LOCATION, KEY, "discharge " + i));
+    }
+    DischargeIndex index = DischargeIndex.of(discharges);
+
+    for (Macaroon discharge : discharges) {
+      assertThat(index.get(bytes(discharge.identifier))).isSameAs(discharge);
+    }
+    assertThat(index.get(bytes("discharge 100"))).isNull();
+    assertThat(index.macaroons()).isEqualTo(discharges);
+  }
+
+  @Test
+  public void identifiers_are_compared_as_utf8() {
+    Macaroon discharge = Macaroon.create(LOCATION, KEY, "user = Jürgen");
+    DischargeIndex index = DischargeIndex.of(Collections.singletonList(discharge));
+
+    assertThat(index.get(bytes("user = Jürgen"))).isSameAs(discharge);
+    assertThat(index.get(bytes("user = Jurgen"))).isNull();
+  }
+
+  @Test
+  public void binding_the_same_discharge_again_is_ignored() {
+    Macaroon discharge = Macaroon.create(LOCATION, KEY, "discharge");
+    DischargeIndex index = DischargeIndex.of(Arrays.asList(discharge, discharge));
+
+    assertThat(index.get(bytes("discharge"))).isSameAs(discharge);
+  }
+
+  @Test
+  public void different_discharges_with_same_identifier_are_remembered_as_duplicate() {
+    Macaroon discharge = Macaroon.create(LOCATION, KEY, "discharge");
+    Macaroon duplicate = Macaroon.create(LOCATION, "another key", "discharge");
+    DischargeIndex index = new DischargeIndex();
+    index.add(discharge);
+    assertThat(index.duplicate()).isNull();
+
+    index.add(duplicate);
+
+    assertThat(index.duplicate()).isSameAs(duplicate);
+    assertThat(index.get(bytes("discharge"))).isSameAs(discharge);
+    assertThat(index.macaroons()).containsOnly(discharge);
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(IDENTIFIER_CHARSET);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.nitram509.jmacaroons.MacaroonsConstants.IDENTIFIER_CHARSET;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ExactCaveatIndexTest {
+
+  @Test
+  public void empty_index_contains_nothing() {
+    ExactCaveatIndex index = ExactCaveatIndex.of(Collections.<String>emptyList());
+
+    assertThat(index.size()).isEqualTo(0);
+    assertThat(index.contains(bytes(""))).isFalse();
+    assertThat(index.contains(bytes("account = 3735928559"))).isFalse();
+  }
+
+  @Test
+  public void index_contains_all_predicates() {
+    List<String> predicates = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      predicates.add("tenant = " + i);
+    }
+    ExactCaveatIndex index = ExactCaveatIndex.of(predicates);
+
+    assertThat(index.size()).isEqualTo(500);
+    for (String predicate : predicates) {
+      assertThat(index.contains(bytes(predicate))).isTrue();
+    }
+    assertThat(index.contains(bytes("tenant = 500"))).isFalse();
+    assertThat(index.contains(bytes("tenant = "))).isFalse();
+  }
+
+  @Test
+  public void duplicated_predicates_are_stored_once() {
+    ExactCaveatIndex index = ExactCaveatIndex.of(Arrays.asList("a = 1", "a = 1", "b = 2"));
+
+    assertThat(index.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void lookup_uses_the_given_slice() {
+    ExactCaveatIndex index = ExactCaveatIndex.of(Collections.singletonList("role = admin"));
+    byte[] buffer = bytes("cid role = admin\n");
+
+    assertThat(index.contains(buffer, 4, 12)).isTrue();
+    assertThat(index.contains(buffer, 4, 11)).isFalse();
+  }
+
+  @Test
+  public void lookup_respects_utf8() {
+    ExactCaveatIndex index = ExactCaveatIndex.of(Collections.singletonList("user = Jürgen"));
+
+    assertThat(index.contains(bytes("user = Jürgen"))).isTrue();
+    assertThat(index.contains(bytes("user = Jurgen"))).isFalse();
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(IDENTIFIER_CHARSET);
+  }
+}
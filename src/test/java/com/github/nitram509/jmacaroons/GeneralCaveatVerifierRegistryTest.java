@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static com.github.nitram509.jmacaroons.CaveatPacket.Type;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class GeneralCaveatVerifierRegistryTest {
+
+  @Test
+  public void caveats_are_only_dispatched_to_verifiers_with_matching_prefix() {
+    CountingVerifier time = new CountingVerifier("time < ", false);
+    CountingVerifier timezone = new CountingVerifier("timezone = ", true);
+    CountingVerifier authorities = new CountingVerifier("authorities =", true);
+    GeneralCaveatVerifierRegistry registry = GeneralCaveatVerifierRegistry.of(Arrays.asList(time, timezone, authorities));
+
+    assertThat(registry.verifies(cid("timezone = UTC"))).isTrue();
+    assertThat(registry.verifies(cid("account = 3735928559"))).isFalse();
+    assertThat(registry.verifies(cid("time"))).isFalse();
+
+    assertThat(time.calls).isEqualTo(0);
+    assertThat(timezone.calls).isEqualTo(1);
+    assertThat(authorities.calls).isEqualTo(0);
+  }
+
+  @Test
+  public void verifiers_without_prefix_are_asked_for_every_caveat() {
+    CountingVerifier any = new CountingVerifier(null, false);
+    CountingVerifier time = new CountingVerifier("time < ", false);
+    GeneralCaveatVerifierRegistry registry = GeneralCaveatVerifierRegistry.of(Arrays.asList(any, time));
+
+    assertThat(registry.verifies(cid("account = 3735928559"))).isFalse();
+    assertThat(registry.verifies(cid("time < 2042-01-01"))).isFalse();
+
+    assertThat(any.calls).isEqualTo(2);
+    assertThat(time.calls).isEqualTo(1);
+  }
+
+  @Test
+  public void dispatching_stops_at_first_satisfying_verifier() {
+    CountingVerifier first = new CountingVerifier("role", true);
+    CountingVerifier second = new CountingVerifier("role = ", true);
+    GeneralCaveatVerifierRegistry registry = GeneralCaveatVerifierRegistry.of(Arrays.asList(first, second));
+
+    assertThat(registry.verifies(cid("role = admin"))).isTrue();
+
+    assertThat(first.calls + second.calls).isEqualTo(1);
+  }
+
+  @Test
+  public void prefixes_with_multibyte_characters() {
+    CountingVerifier verifier = new CountingVerifier("größe = ", true);
+    GeneralCaveatVerifierRegistry registry = GeneralCaveatVerifierRegistry.of(Arrays.<GeneralCaveatVerifier>asList(verifier));
+
+    assertThat(registry.verifies(cid("größe = 42"))).isTrue();
+    assertThat(registry.verifies(cid("grösse = 42"))).isFalse();
+  }
+
+  private static CaveatPacket cid(String caveat) {
+    return new CaveatPacket(Type.cid, caveat);
+  }
+
+  private static class CountingVerifier implements GeneralCaveatVerifier {
+    private final String prefix;
+    private final boolean result;
+    private int calls = 0;
+
+    private CountingVerifier(String prefix, boolean result) {
+      this.prefix = prefix;
+      this.result = result;
+    }
+
+    @Override
+    public boolean verifyCaveat(String caveat) {
+      calls++;
+      return result;
+    }
+
+    @Override
+    public String getCaveatPrefix() {
+      return prefix;
+    }
+  }
+}
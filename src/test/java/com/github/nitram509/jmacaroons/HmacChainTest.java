@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HmacChainTest {
+
+  private static final byte[] KEY = "this is our super secret key; only we should know it".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void signature_may_be_written_into_the_key_buffer() throws Exception {
+    byte[] expected = jcaHmac(jcaHmac(KEY, bytes("identifier")), bytes("account = 3735928559"));
+
+    byte[] csig = new byte[32];
+    HmacChain.get().hmac(KEY, bytes("identifier"), csig);
+    HmacChain.get().hmac(csig, bytes("account = 3735928559"), csig);
+
+    assertThat(csig).isEqualTo(expected);
+  }
+
+  @Test
+  public void pure_java_chain_computes_the_same_signatures() throws Exception {
+    byte[] derived = jcaHmac(bytes("macaroons-key-generator"), KEY);
+    byte[] expected = jcaHmac(jcaHmac(derived, bytes("identifier")), bytes("account = 3735928559"));
+
+    byte[] csig = new byte[32];
+    HmacChain.pureJava().deriveKey(KEY, csig);
+    assertThat(csig).isEqualTo(derived);
+    HmacChain.pureJava().hmac(csig, bytes("identifier"), csig);
+    HmacChain.pureJava().hmac(csig, bytes("account = 3735928559"), csig);
+
+    assertThat(csig).isEqualTo(expected);
+  }
+
+  @Test
+  public void hash2_is_hmac_of_both_hmacs() throws Exception {
+    byte[] key = jcaHmac(KEY, bytes("identifier"));
+    byte[] tmp = new byte[64];
+    System.arraycopy(jcaHmac(key, bytes("vid")), 0, tmp, 0, 32);
+    System.arraycopy(jcaHmac(key, bytes("cid")), 0, tmp, 32, 32);
+    byte[] expected = jcaHmac(key, tmp);
+
+    HmacChain.get().hash2(key, bytes("vid"), bytes("cid"), key);
+
+    assertThat(key).isEqualTo(expected);
+  }
+
+  private static byte[] jcaHmac(byte[] key, byte[] message) throws Exception {
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(key, "HmacSHA256"));
+    return mac.doFinal(message);
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+}
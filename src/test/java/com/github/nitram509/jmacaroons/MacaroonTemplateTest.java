@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MacaroonTemplateTest {
+
+  private String location;
+  private String secret;
+  private MacaroonTemplate template;
+
+  @BeforeMethod
+  public void setUp() {
+    location = "http://mybank/";
+    secret = "this is our super secret key; only we should know it";
+    template = MacaroonTemplate.builder(location, secret)
+        .addCaveat("service = X")
+        .addCaveat("env = prod")
+        .build();
+  }
+
+  @Test
+  public void minted_macaroon_equals_built_macaroon() {
+    Macaroon expected = Macaroon.builder(location, secret, "we used our secret key")
+        .addCaveat("service = X")
+        .addCaveat("env = prod")
+        .addCaveat("account = 3735928559")
+        .build();
+
+    Macaroon minted = template.mint("we used our secret key", "account = 3735928559");
+
+    assertThat(minted).isEqualTo(expected);
+    assertThat(minted.signature).isEqualTo(expected.signature);
+  }
+
+  @Test
+  public void null_caveats_are_ignored_like_by_the_builder() {
+    Macaroon expected = Macaroon.builder(location, secret, "we used our secret key")
+        .addCaveat("service = X")
+        .addCaveat("env = prod")
+        .addCaveat((String) null)
+        .addCaveat("account = 3735928559")
+        .build();
+
+    Macaroon minted = template.mint("we used our secret key", null, "account = 3735928559", null);
+
+    assertThat(minted).isEqualTo(expected);
+    assertThat(minted.caveatPackets).hasSize(3);
+  }
+
+  @Test
+  public void template_without_caveats_mints_like_create() {
+    MacaroonTemplate plain = MacaroonTemplate.builder(location, secret).build();
+
+    assertThat(plain.mint("we used our secret key")).isEqualTo(Macaroon.create(location, secret, "we used our secret key"));
+  }
+
+  @Test
+  public void minted_macaroons_differ_by_identifier() {
+    Macaroon m1 = template.mint("id 1");
+    Macaroon m2 = template.mint("id 2");
+
+    assertThat(m1.signature).isNotEqualTo(m2.signature);
+    assertThat(m1.caveatPackets).isNotSameAs(m2.caveatPackets);
+  }
+
+  @Test
+  public void minted_macaroon_is_verified() {
+    Macaroon macaroon = template.builder("we used our secret key")
+        .addCaveat("http://auth.mybank/", "this is another secret", "this was how we remind auth of key/pred")
+        .build();
+
+    Macaroon discharge = Macaroon.create("http://auth.mybank/", "this is another secret", "this was how we remind auth of key/pred");
+
+    MacaroonsVerifier verifier = new MacaroonsVerifier(macaroon)
+        .satisfyExact("service = X")
+        .satisfyExact("env = prod")
+        .satisfy3rdParty(Macaroon.builder(macaroon).prepareForRequest(discharge).build());
+
+    assertThat(verifier.isValid(secret)).isTrue();
+  }
+}
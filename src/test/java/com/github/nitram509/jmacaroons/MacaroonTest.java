@@ -17,8 +17,14 @@
 package com.github.nitram509.jmacaroons;
 
 
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class MacaroonTest {
@@ -53,4 +59,91 @@ public class MacaroonTest {
     // NullPointerException
   }
 
-}
\ No newline at end of file
+  @DataProvider
+  public Object[][] macaroons() {
+    StringBuilder longCaveat = new StringBuilder("long = ");
+    while (longCaveat.length() < 300) {
+      longCaveat.append('x');
+    }
+    return new Object[][]{
+        {Macaroon.create("http://mybank/", "secret", "we used our secret key")},
+        {Macaroon.builder("", "secret", "").build()},
+        {Macaroon.builder("http://mybank/", "secret", "J\u00fcrgen \u20ac \ud83c\udf6a \ud83c")
+            .addCaveat("user = J\u00fcrgen")
+            .addCaveat(longCaveat.toString())
+            .build()},
+        {Macaroon.builder("http://mybank/", "secret", "identifier")
+            .addCaveat("account = 3735928559")
+            .addCaveat("http://auth.mybank/", "caveat key", "caveat identifier")
+            .build()},
+    };
+  }
+
+  @Test(dataProvider = "macaroons")
+  public void serialized_sizes_are_exact(Macaroon macaroon) {
+    for (MacaroonsSerializer format : new MacaroonsSerializer[]{MacaroonsSerializer.V1, MacaroonsSerializer.V2}) {
+      assertThat(macaroon.serializedSize(format)).isEqualTo(macaroon.serialize(format).length());
+      assertThat(macaroon.serializedBinarySize(format)).isEqualTo(format.serializeBinary(macaroon).length);
+    }
+  }
+
+  @Test
+  public void serialized_forms_are_memoized() {
+    Macaroon macaroon = Macaroon.builder("http://mybank/", "secret", "identifier")
+        .addCaveat("account = 3735928559")
+        .build();
+
+    String v1 = macaroon.serialize(MacaroonsSerializer.V1);
+    String v2 = macaroon.serialize(MacaroonsSerializer.V2);
+
+    assertThat(macaroon.serialize(MacaroonsSerializer.V1)).isSameAs(v1);
+    assertThat(macaroon.serialize(MacaroonsSerializer.V2)).isSameAs(v2);
+    assertThat(macaroon.serialize()).isSameAs(v1);
+  }
+
+  @Test
+  public void string_serialization_does_not_memoize_the_binary_form() throws Exception {
+    Macaroon macaroon = Macaroon.create("http://mybank/", "secret", "identifier");
+
+    macaroon.serialize(MacaroonsSerializer.V2);
+    MacaroonsSerializer.V2.serialize(macaroon, new StringBuilder());
+    MacaroonsSerializer.V2.serialize(macaroon, new ByteArrayOutputStream());
+
+    assertThat(macaroon.serializedForms().string(2)).isNotNull();
+    assertThat(macaroon.serializedForms().binary(2)).isNull();
+
+    MacaroonsSerializer.V2.serializeBinary(macaroon);
+
+    assertThat(macaroon.serializedForms().binary(2)).isNotNull();
+  }
+
+  @Test
+  public void memoized_binary_form_cannot_be_modified() {
+    Macaroon macaroon = Macaroon.create("http://mybank/", "secret", "identifier");
+    byte[] binary = MacaroonsSerializer.V2.serializeBinary(macaroon);
+    byte[] expected = binary.clone();
+
+    binary[0] = 42;
+
+    assertThat(MacaroonsSerializer.V2.serializeBinary(macaroon)).isEqualTo(expected);
+  }
+
+  @Test
+  public void memoized_forms_are_not_java_serialized() throws Exception {
+    Macaroon macaroon = Macaroon.create("http://mybank/", "secret", "identifier");
+    String serialized = macaroon.serialize(MacaroonsSerializer.V2);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(macaroon);
+    }
+    Macaroon copy;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (Macaroon) in.readObject();
+    }
+
+    assertThat(copy).isEqualTo(macaroon);
+    assertThat(copy.serialize(MacaroonsSerializer.V2)).isEqualTo(serialized);
+  }
+
+}
@@ -19,6 +19,8 @@ package com.github.nitram509.jmacaroons;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+
 import static com.github.nitram509.jmacaroons.CaveatPacket.Type;
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -83,6 +85,38 @@ public class MacaroonsBuilderCaveatsTest {
     assertThat(m.signature).isEqualTo("882e6d59496ed5245edb7ab5b8839ecd63e5d504e54839804f164070d8eed952");
   }
 
+  @Test
+  public void add_first_party_caveats_at_once() {
+    m = Macaroon.builder(location, secret, identifier)
+        .addCaveats(Arrays.asList("account = 3735928559", null, "time < 2015-01-01T00:00", "email = alice@example.org"))
+        .build();
+
+    assertThat(m.caveatPackets).isEqualTo(new CaveatPacket[]{
+        new CaveatPacket(Type.cid, "account = 3735928559"),
+        new CaveatPacket(Type.cid, "time < 2015-01-01T00:00"),
+        new CaveatPacket(Type.cid, "email = alice@example.org")
+    });
+    assertThat(m.signature).isEqualTo("882e6d59496ed5245edb7ab5b8839ecd63e5d504e54839804f164070d8eed952");
+  }
+
+  @Test
+  public void built_macaroon_is_not_changed_by_the_builder() {
+    MacaroonsBuilder builder = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559");
+    Macaroon first = builder.build();
+
+    Macaroon second = builder
+        .addCaveat("time < 2015-01-01T00:00")
+        .addCaveat("email = alice@example.org")
+        .build();
+
+    assertThat(builder.build()).isSameAs(second);
+    assertThat(first.caveatPackets).hasSize(1);
+    assertThat(first.signature).isEqualTo("1efe4763f290dbce0c1d08477367e11f4eee456a64933cf662d79772dbb82128");
+    assertThat(second.caveatPackets).hasSize(3);
+    assertThat(second.signature).isEqualTo("882e6d59496ed5245edb7ab5b8839ecd63e5d504e54839804f164070d8eed952");
+  }
+
   @Test
   public void add_first_party_caveat_German_umlauts_using_UTF8_encoding() {
     MacaroonsBuilder mb = Macaroon.builder(location, secret, identifier);
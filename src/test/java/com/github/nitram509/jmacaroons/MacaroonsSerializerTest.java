@@ -17,6 +17,14 @@
 package com.github.nitram509.jmacaroons;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Base64;
 
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -66,4 +74,128 @@ public class MacaroonsSerializerTest {
         assertThat(v1Macaroon.serialize(MacaroonsSerializer.V2)).isEqualTo(v2);
     }
 
+    @Test(dataProvider = "testCases")
+    public void shouldMatchSerializationTestsInBinaryForm(String v1, String v2) {
+        // Given
+        byte[] v1Binary = Base64.getUrlDecoder().decode(v1);
+        byte[] v2Binary = Base64.getUrlDecoder().decode(v2);
+
+        // When
+        Macaroon v1Macaroon = MacaroonsSerializer.V1.deserializeBinary(v1Binary);
+        Macaroon v2Macaroon = MacaroonsSerializer.V2.deserializeBinary(v2Binary);
+
+        // Then
+        assertThat(v1Macaroon).isEqualTo(v2Macaroon);
+        assertThat(MacaroonsSerializer.V1.serializeBinary(v2Macaroon)).isEqualTo(v1Binary);
+        assertThat(MacaroonsSerializer.V2.serializeBinary(v1Macaroon)).isEqualTo(v2Binary);
+    }
+
+    @Test(dataProvider = "testCases")
+    public void shouldDeserializeBinaryFromByteBuffers(String v1, String v2) {
+        // Given
+        byte[] v2Binary = Base64.getUrlDecoder().decode(v2);
+        Macaroon expected = MacaroonsSerializer.V2.deserialize(v2);
+        ByteBuffer heap = ByteBuffer.allocate(v2Binary.length + 8);
+        heap.position(3);
+        heap.put(v2Binary);
+        heap.position(3).limit(3 + v2Binary.length);
+        ByteBuffer direct = ByteBuffer.allocateDirect(v2Binary.length);
+        direct.put(v2Binary).flip();
+
+        // When
+        Macaroon fromHeap = MacaroonsSerializer.V2.deserializeBinary(heap.slice());
+        Macaroon fromDirect = MacaroonsSerializer.V2.deserializeBinary(direct);
+
+        // Then
+        assertThat(fromHeap).isEqualTo(expected);
+        assertThat(fromDirect).isEqualTo(expected);
+        assertThat(direct.hasRemaining()).isFalse();
+    }
+
+    @Test(dataProvider = "testCases")
+    public void shouldStreamStringForm(String v1, String v2) throws Exception {
+        // Given
+        Macaroon macaroon = MacaroonsSerializer.V2.deserialize(v2);
+        StringBuilder v1Builder = new StringBuilder("prefix:");
+        StringWriter v2Writer = new StringWriter();
+        ByteArrayOutputStream v2Stream = new ByteArrayOutputStream();
+
+        // When
+        MacaroonsSerializer.V1.serialize(macaroon, v1Builder);
+        MacaroonsSerializer.V2.serialize(macaroon, v2Writer);
+        MacaroonsSerializer.V2.serialize(macaroon, v2Stream);
+
+        // Then
+        assertThat(v1Builder.toString()).isEqualTo("prefix:" + v1);
+        assertThat(v2Writer.toString()).isEqualTo(v2);
+        assertThat(v2Stream.toString("US-ASCII")).isEqualTo(v2);
+    }
+
+    @Test(dataProvider = "testCases")
+    public void shouldStreamBinaryForm(String v1, String v2) throws Exception {
+        // Given
+        Macaroon macaroon = MacaroonsSerializer.V1.deserialize(v1);
+        byte[] v2Binary = Base64.getUrlDecoder().decode(v2);
+        ByteBuffer direct = ByteBuffer.allocateDirect(v2Binary.length + 1);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteArrayOutputStream channel = new ByteArrayOutputStream();
+
+        // When
+        MacaroonsSerializer.V2.serializeBinary(macaroon, direct);
+        MacaroonsSerializer.V2.serializeBinary(macaroon, stream);
+        MacaroonsSerializer.V2.serializeBinary(macaroon, Channels.newChannel(channel));
+
+        // Then
+        assertThat(direct.position()).isEqualTo(v2Binary.length);
+        byte[] written = new byte[v2Binary.length];
+        ((ByteBuffer) direct.flip()).get(written);
+        assertThat(written).isEqualTo(v2Binary);
+        assertThat(stream.toByteArray()).isEqualTo(v2Binary);
+        assertThat(channel.toByteArray()).isEqualTo(v2Binary);
+    }
+
+    @Test(dataProvider = "testCases")
+    public void shouldWriteNothingWhenBufferIsTooSmall(String v1, String v2) {
+        // Given
+        Macaroon macaroon = MacaroonsSerializer.V1.deserialize(v1);
+        int size = MacaroonsSerializer.V1.serializeBinary(macaroon).length;
+        ByteBuffer buffer = ByteBuffer.allocate(size - 1);
+
+        // When
+        try {
+            MacaroonsSerializer.V1.serializeBinary(macaroon, buffer);
+            fail("expected BufferOverflowException");
+        } catch (BufferOverflowException expected) {
+            // expected
+        }
+
+        // Then
+        assertThat(buffer.position()).isEqualTo(0);
+    }
+
+    @Test(dataProvider = "testCases")
+    public void shouldDeriveBinaryFormOfStringOnlyFormats(String v1, String v2) {
+        // Given
+        MacaroonsSerializer stringOnly = new MacaroonsSerializer() {
+            @Override
+            public String serialize(Macaroon macaroon) {
+                return MacaroonsSerializer.V2.serialize(macaroon);
+            }
+
+            @Override
+            public Macaroon deserialize(String serialized) {
+                return MacaroonsSerializer.V2.deserialize(serialized);
+            }
+        };
+        Macaroon macaroon = MacaroonsSerializer.V2.deserialize(v2);
+
+        // When
+        byte[] binary = stringOnly.serializeBinary(macaroon);
+
+        // Then
+        assertThat(binary).isEqualTo(MacaroonsSerializer.V2.serializeBinary(macaroon));
+        assertThat(stringOnly.serializedBinarySize(macaroon)).isEqualTo(binary.length);
+        assertThat(stringOnly.deserializeBinary(binary)).isEqualTo(macaroon);
+        assertThat(stringOnly.deserializeBinary(ByteBuffer.wrap(binary))).isEqualTo(macaroon);
+    }
 }
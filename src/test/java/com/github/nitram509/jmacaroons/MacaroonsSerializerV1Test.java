@@ -124,6 +124,17 @@ public class MacaroonsSerializerV1Test {
     // expected NotDeSerializableException
   }
 
+  @Test
+  public void caveat_bytes_are_deserialized_as_they_are() {
+    byte[] notUtf8 = {'a', ' ', '=', ' ', (byte) 0xc3, (byte) 0x28};
+    m = new Macaroon(location, identifier, new byte[MacaroonsConstants.MACAROON_HASH_BYTES],
+        new CaveatPacket[]{new CaveatPacket(CaveatPacket.Type.cid, notUtf8)});
+
+    Macaroon deserialized = MacaroonsSerializer.V1.deserialize(m.serialize());
+
+    assertThat(deserialized.caveatPackets[0].rawValue).isEqualTo(notUtf8);
+  }
+
   @Test
   public void stateful_packet_reader_parses_header_length() throws Exception {
     MacaroonsSerializerV1.StatefulPacketReader packetReader =
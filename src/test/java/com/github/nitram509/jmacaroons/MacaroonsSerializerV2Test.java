@@ -17,11 +17,11 @@
 package com.github.nitram509.jmacaroons;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.testng.Assert.fail;
 
-import java.io.DataInputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Base64;
 
 import org.testng.annotations.Test;
 
@@ -70,21 +70,85 @@ public class MacaroonsSerializerV2Test {
 
 
     @Test
-    public void shouldHandleVarIntsCorrectly() throws Exception {
-        try (PipedOutputStream out = new PipedOutputStream();
-             DataInputStream in = new DataInputStream(new PipedInputStream(out))) {
-
-            for (long l = 0L; l < 1000000L; ++l) {
-                MacaroonsSerializerV2.writeVarInt(out, l);
-                long read = MacaroonsSerializerV2.readVarInt(in);
-                assertThat(read).isEqualTo(l);
+    public void shouldHandleVarIntsCorrectly() {
+        for (long l = 0L; l < 1000000L; ++l) {
+            assertThat(writeAndReadVarInt(l)).isEqualTo(l);
+        }
+
+        assertThat(writeAndReadVarInt(Long.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+        assertThat(writeAndReadVarInt(Long.MIN_VALUE)).isEqualTo(Long.MIN_VALUE);
+    }
+
+    private static long writeAndReadVarInt(long value) {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        MacaroonsSerializerV2.writeVarInt(buffer, value);
+        MacaroonsSerializerV2.Parser in = new MacaroonsSerializerV2.Parser(buffer.array(), 0, buffer.position());
+        long read = in.readVarInt();
+        in.rejectTrailingData();
+        return read;
+    }
+
+    @Test
+    public void shouldDeserializeFromOffsetInBinary() {
+        Macaroon macaroon = Macaroon.builder(LOCATION, "secret", IDENTIFIER)
+                .addCaveat(FIRST_PARTY_CAVEAT)
+                .build();
+        byte[] binary = Base64.getUrlDecoder().decode(macaroon.serialize(MacaroonsSerializer.V2));
+        byte[] padded = new byte[binary.length + 10];
+        System.arraycopy(binary, 0, padded, 5, binary.length);
+
+        Macaroon deserialized = new MacaroonsSerializerV2().deserialize(padded, 5, binary.length);
+
+        assertThat(deserialized).isEqualTo(macaroon);
+    }
+
+    @Test
+    public void shouldRejectTruncatedMacaroons() {
+        Macaroon macaroon = Macaroon.builder(LOCATION, "secret", IDENTIFIER)
+                .addCaveat(FIRST_PARTY_CAVEAT)
+                .addCaveat(THIRD_PARTY_LOCATION, "caveat key", THIRD_PARTY_CAVEAT)
+                .build();
+        byte[] binary = Base64.getUrlDecoder().decode(macaroon.serialize(MacaroonsSerializer.V2));
+
+        for (int length = 0; length < binary.length; length++) {
+            try {
+                new MacaroonsSerializerV2().deserialize(binary, 0, length);
+                fail("expected NotDeSerializableException for length " + length);
+            } catch (NotDeSerializableException expected) {
+                // expected
             }
+        }
+    }
 
-            MacaroonsSerializerV2.writeVarInt(out, Long.MAX_VALUE);
-            assertThat(MacaroonsSerializerV2.readVarInt(in)).isEqualTo(Long.MAX_VALUE);
+    @Test(expectedExceptions = NotDeSerializableException.class)
+    public void shouldRejectInvalidBase64() {
+        MacaroonsSerializer.V2.deserialize("AgE*");
+    }
+
+    @Test(expectedExceptions = NotDeSerializableException.class)
+    public void shouldRejectOversizedFieldLength() {
+        // version 2, location field with a length of 2^20
+        new MacaroonsSerializerV2().deserialize(new byte[]{2, 1, (byte) 0x80, (byte) 0x80, 0x40}, 0, 5);
+    }
 
-            MacaroonsSerializerV2.writeVarInt(out, Long.MIN_VALUE);
-            assertThat(MacaroonsSerializerV2.readVarInt(in)).isEqualTo(Long.MIN_VALUE);
+    @Test
+    public void shouldRejectTrailingData() {
+        Macaroon macaroon = Macaroon.create(LOCATION, "secret", IDENTIFIER);
+        byte[] binary = MacaroonsSerializer.V2.serializeBinary(macaroon);
+        byte[] trailing = Arrays.copyOf(binary, binary.length + 1);
+
+        try {
+            MacaroonsSerializer.V2.deserializeBinary(trailing);
+            fail("expected NotDeSerializableException");
+        } catch (NotDeSerializableException expected) {
+            // expected
+        }
+        try {
+            MacaroonsSerializer.V2.deserialize(Base64.getUrlEncoder().withoutPadding().encodeToString(trailing));
+            fail("expected NotDeSerializableException");
+        } catch (NotDeSerializableException expected) {
+            // expected
         }
+        assertThat(new MacaroonsSerializerV2().deserialize(trailing, 0, binary.length)).isEqualTo(macaroon);
     }
 }
@@ -126,6 +126,40 @@ public class MacaroonsVerifierTest {
     assertThat(verifier.isValid(secret)).isTrue();
   }
 
+  @Test
+  public void verification_result_fail_fast() {
+    m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .addCaveat("role = admin")
+        .build();
+
+    MacaroonsVerifier verifier = new MacaroonsVerifier(m)
+        .satisfyExact("account = 3735928559")
+        .failFast(true);
+    VerificationResult result = verifier.verify(secret);
+
+    assertThat(result.isValid()).isFalse();
+    assertThat(result.getCaveatIndex()).isEqualTo(1);
+
+    verifier.satisfyExact("role = admin");
+    assertThat(verifier.verify(secret).isValid()).isTrue();
+  }
+
+  @Test
+  public void verification_fails_with_discharges_of_same_identifier() {
+    m = Macaroon.builder(location, secret, identifier).build();
+    Macaroon duplicate = Macaroon.create("http://auth.mybank/", "another key", "discharge");
+
+    MacaroonsVerifier verifier = new MacaroonsVerifier(m)
+        .satisfy3rdParty(Macaroon.create("http://auth.mybank/", "a key", "discharge"))
+        .satisfy3rdParty(duplicate);
+
+    assertThat(verifier.isValid(secret)).isFalse();
+    VerificationResult result = verifier.verify(secret);
+    assertThat(result.getFailure()).isEqualTo(VerificationResult.Failure.DISCHARGE_DUPLICATE);
+    assertThat(result.getMacaroon()).isSameAs(duplicate);
+  }
+
   private String createTimeStamp1WeekInFuture() {
     return ISO_DateFormat.format(new Date(System.currentTimeMillis() + (1000 * 60 * 60 * 24 * 7)));
   }
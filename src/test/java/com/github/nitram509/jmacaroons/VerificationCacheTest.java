@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons;
+
+import com.github.nitram509.jmacaroons.verifier.TimestampCaveatVerifier;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class VerificationCacheTest {
+
+  private String location;
+  private String secret;
+  private String identifier;
+  private AtomicLong nanos;
+  private AtomicInteger generalVerifications;
+  private VerificationCache cache;
+  private VerificationPolicy policy;
+
+  @BeforeMethod
+  public void setUp() {
+    location = "http://mybank/";
+    secret = "this is our super secret key; only we should know it";
+    identifier = "we used our secret key";
+    nanos = new AtomicLong();
+    generalVerifications = new AtomicInteger();
+    cache = VerificationCache.builder()
+        .maximumSize(2)
+        .expireAfterWrite(Duration.ofSeconds(10))
+        .ticker(nanos::get)
+        .build();
+    policy = policyWith(cache);
+  }
+
+  @Test
+  public void repeated_verification_is_served_from_cache() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+
+    assertThat(policy.isValid(m, secret)).isTrue();
+    assertThat(policy.isValid(m, secret)).isTrue();
+    assertThat(policy.isValid(m, secret)).isTrue();
+
+    assertThat(generalVerifications.get()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalid_results_are_not_cached() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 0")
+        .build();
+
+    assertThat(policy.isValid(m, secret)).isFalse();
+    assertThat(policy.isValid(m, secret)).isFalse();
+
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void other_secret_does_not_hit_the_cache() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+
+    assertThat(policy.isValid(m, secret)).isTrue();
+    assertThat(policy.isValid(m, "wrong secret")).isFalse();
+  }
+
+  @Test
+  public void other_policy_does_not_hit_the_cache() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+    VerificationPolicy otherPolicy = VerificationPolicy.builder()
+        .verificationCache(cache)
+        .build();
+
+    assertThat(policy.isValid(m, secret)).isTrue();
+    assertThat(otherPolicy.isValid(m, secret)).isFalse();
+  }
+
+  @Test
+  public void forged_identifier_with_genuine_signature_does_not_hit_the_cache() {
+    Macaroon genuine = Macaroon.builder(location, secret, "id-alice")
+        .addCaveat("account = 3735928559")
+        .build();
+    Macaroon forged = new Macaroon(location, "id-bob", genuine.signatureBytes, genuine.caveatPackets);
+
+    assertThat(policy.isValid(genuine, secret)).isTrue();
+    assertThat(policy.isValid(forged, secret)).isFalse();
+  }
+
+  @Test
+  public void forged_caveat_with_genuine_signature_does_not_hit_the_cache() {
+    Macaroon genuine = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+    Macaroon forged = new Macaroon(location, identifier, genuine.signatureBytes,
+        new CaveatPacket[]{new CaveatPacket(CaveatPacket.Type.cid, "user = bob")});
+    VerificationPolicy lenientPolicy = VerificationPolicy.builder()
+        .satisfyExact("account = 3735928559")
+        .satisfyExact("user = bob")
+        .verificationCache(cache)
+        .build();
+
+    assertThat(lenientPolicy.isValid(genuine, secret)).isTrue();
+    assertThat(lenientPolicy.isValid(forged, secret)).isFalse();
+  }
+
+  @Test
+  public void other_context_does_not_hit_the_cache() {
+    AtomicReference<String> resource = new AtomicReference<>("/accounts/1");
+    VerificationCache contextCache = VerificationCache.builder()
+        .contextFingerprint(() -> resource.get().getBytes(StandardCharsets.UTF_8))
+        .build();
+    VerificationPolicy contextPolicy = policyWith(contextCache);
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+
+    contextPolicy.isValid(m, secret);
+    contextPolicy.isValid(m, secret);
+    assertThat(generalVerifications.get()).isEqualTo(1);
+
+    resource.set("/accounts/2");
+    contextPolicy.isValid(m, secret);
+    assertThat(generalVerifications.get()).isEqualTo(2);
+    assertThat(contextCache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void entries_expire() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+
+    policy.isValid(m, secret);
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+    policy.isValid(m, secret);
+
+    assertThat(generalVerifications.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void least_recently_used_entries_are_evicted() {
+    Macaroon m1 = Macaroon.builder(location, secret, "id1").addCaveat("account = 3735928559").build();
+    Macaroon m2 = Macaroon.builder(location, secret, "id2").addCaveat("account = 3735928559").build();
+    Macaroon m3 = Macaroon.builder(location, secret, "id3").addCaveat("account = 3735928559").build();
+
+    policy.isValid(m1, secret);
+    policy.isValid(m2, secret);
+    policy.isValid(m1, secret);
+    policy.isValid(m3, secret);
+    assertThat(generalVerifications.get()).isEqualTo(3);
+
+    policy.isValid(m1, secret);
+    assertThat(generalVerifications.get()).isEqualTo(3);
+    policy.isValid(m2, secret);
+    assertThat(generalVerifications.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void time_dependent_macaroons_are_not_cached() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .addCaveat("time < " + Instant.now().plus(Duration.ofDays(1)))
+        .build();
+
+    assertThat(policy.isValid(m, secret)).isTrue();
+    assertThat(policy.isValid(m, secret)).isTrue();
+
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void time_dependent_discharge_macaroons_are_not_cached() {
+    String caveat_key = "4; guaranteed random by a fair toss of the dice";
+    String caveat_identifier = "this was how we remind auth of key/pred";
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("http://auth.mybank/", caveat_key, caveat_identifier)
+        .build();
+    Macaroon d = Macaroon.builder("http://auth.mybank/", caveat_key, caveat_identifier)
+        .addCaveat("time < " + Instant.now().plus(Duration.ofDays(1)))
+        .build();
+    Macaroon dp = Macaroon.builder(m).prepareForRequest(d).build();
+
+    assertThat(policy.isValid(m, secret, dp)).isTrue();
+
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void invalidateAll() {
+    Macaroon m = Macaroon.builder(location, secret, identifier).build();
+    policy.isValid(m, secret);
+
+    cache.invalidateAll();
+
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  private VerificationPolicy policyWith(VerificationCache cache) {
+    return VerificationPolicy.builder()
+        .satisfyGeneral(caveat -> {
+          generalVerifications.incrementAndGet();
+          return caveat.equals("account = 3735928559");
+        })
+        .satisfyGeneral(new TimestampCaveatVerifier())
+        .verificationCache(cache)
+        .build();
+  }
+}
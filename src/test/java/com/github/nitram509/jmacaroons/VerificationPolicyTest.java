@@ -0,0 +1,421 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons;
+
+import com.github.nitram509.jmacaroons.verifier.TimestampCaveatVerifier;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.nitram509.jmacaroons.CryptoTools.string_to_bytes;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public class VerificationPolicyTest {
+
+  private String location;
+  private String secret;
+  private String identifier;
+  private VerificationPolicy policy;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    location = "http://mybank/";
+    secret = "this is our super secret key; only we should know it";
+    identifier = "we used our secret key";
+    policy = VerificationPolicy.builder()
+        .satisfyExact("account = 3735928559")
+        .satisfyGeneral(new TimestampCaveatVerifier())
+        .build();
+  }
+
+  @Test
+  public void policy_verifies_different_macaroons() {
+    Macaroon m1 = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+    Macaroon m2 = Macaroon.builder(location, secret, "another identifier")
+        .addCaveat("time < " + Instant.now().plus(Duration.ofDays(7)))
+        .build();
+
+    assertThat(policy.isValid(m1, secret)).isTrue();
+    assertThat(policy.isValid(m2, secret)).isTrue();
+    assertThat(policy.isValid(m1, "wrong secret")).isFalse();
+  }
+
+  @Test
+  public void policy_rejects_unsatisfied_caveat() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 0000000000")
+        .build();
+
+    assertThat(policy.isValid(m, secret)).isFalse();
+  }
+
+  @Test(expectedExceptions = MacaroonValidationException.class)
+  public void policy_assertion() {
+    Macaroon m = Macaroon.create(location, secret, identifier);
+
+    policy.assertIsValid(m, "wrong secret");
+
+    // expect MacaroonValidationException
+  }
+
+  @Test
+  public void policy_assertion_carries_result() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("role = admin")
+        .build();
+
+    try {
+      policy.assertIsValid(m, secret);
+      throw new AssertionError("expected MacaroonValidationException");
+    } catch (MacaroonValidationException e) {
+      assertThat(e.getMacaroon()).isSameAs(m);
+      assertThat(e.getVerificationResult().getFailure()).isEqualTo(VerificationResult.Failure.CAVEAT_NOT_SATISFIED);
+      assertThat(e.getMessage()).isEqualTo("Caveat isn't satisfied: role = admin");
+    }
+  }
+
+  @Test
+  public void policy_verifies_discharge_macaroons() {
+    String caveat_key = "4; guaranteed random by a fair toss of the dice";
+    String caveat_identifier = "this was how we remind auth of key/pred";
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .addCaveat("http://auth.mybank/", caveat_key, caveat_identifier)
+        .build();
+    Macaroon d = Macaroon.builder("http://auth.mybank/", caveat_key, caveat_identifier)
+        .addCaveat("time < " + Instant.now().plus(Duration.ofDays(7)))
+        .build();
+    Macaroon dp = Macaroon.builder(m)
+        .prepareForRequest(d)
+        .build();
+
+    assertThat(policy.isValid(m, secret, dp)).isTrue();
+    assertThat(policy.isValid(m, secret, d)).isFalse();
+    assertThat(policy.isValid(m, secret)).isFalse();
+  }
+
+  @Test
+  public void verify_returns_valid_result() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+
+    VerificationResult result = policy.verify(m, secret);
+
+    assertThat(result.isValid()).isTrue();
+    assertThat(result.getCaveatIndex()).isEqualTo(-1);
+    assertThat(result.getFailure()).isNull();
+    assertThat(result.getMacaroon()).isNull();
+    assertThat(result.getMessage()).isNull();
+  }
+
+  @Test
+  public void verify_reports_first_unsatisfied_caveat() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .addCaveat("role = admin")
+        .addCaveat("account = 0000000000")
+        .build();
+
+    VerificationResult result = policy.verify(m, secret);
+
+    assertThat(result.isValid()).isFalse();
+    assertThat(result.getCaveatIndex()).isEqualTo(1);
+    assertThat(result.getFailure()).isEqualTo(VerificationResult.Failure.CAVEAT_NOT_SATISFIED);
+    assertThat(result.getMacaroon()).isSameAs(m);
+    assertThat(result.getMessage()).contains("role = admin");
+  }
+
+  @Test
+  public void verify_reports_wrong_signature_without_caveat() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .build();
+
+    VerificationResult result = policy.verify(m, "wrong secret");
+
+    assertThat(result.isValid()).isFalse();
+    assertThat(result.getCaveatIndex()).isEqualTo(-1);
+    assertThat(result.getFailure()).isEqualTo(VerificationResult.Failure.SIGNATURE_MISMATCH);
+    assertThat(result.getMessage()).contains("Signature doesn't match");
+  }
+
+  @Test
+  public void verify_reports_third_party_caveat_without_discharge() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("account = 3735928559")
+        .addCaveat("http://auth.mybank/", "caveat key", "caveat identifier")
+        .build();
+
+    VerificationResult result = policy.verify(m, secret);
+
+    assertThat(result.getFailure()).isEqualTo(VerificationResult.Failure.DISCHARGE_MISSING);
+    assertThat(m.caveatPackets[result.getCaveatIndex()].getValueAsText()).isEqualTo("caveat identifier");
+    assertThat(result.getMessage()).contains("caveat identifier");
+  }
+
+  @Test
+  public void fail_fast_stops_at_first_unsatisfied_caveat() {
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("role = admin")
+        .addCaveat("time < " + Instant.now().plus(Duration.ofDays(7)))
+        .addCaveat("time < " + Instant.now().plus(Duration.ofDays(7)))
+        .build();
+    CountingCaveatVerifier timestamps = new CountingCaveatVerifier();
+    VerificationPolicy timingSafe = VerificationPolicy.builder().satisfyGeneral(timestamps).build();
+    VerificationPolicy failFast = VerificationPolicy.builder().satisfyGeneral(timestamps).failFast(true).build();
+
+    VerificationResult completed = timingSafe.verify(m, secret);
+    int askedWhenCompleted = timestamps.calls;
+    timestamps.calls = 0;
+    VerificationResult stopped = failFast.verify(m, secret);
+
+    assertThat(askedWhenCompleted).isEqualTo(3);
+    assertThat(timestamps.calls).isEqualTo(1);
+    assertThat(stopped.isValid()).isFalse();
+    assertThat(stopped.getCaveatIndex()).isEqualTo(completed.getCaveatIndex()).isEqualTo(0);
+    assertThat(stopped.getFailure()).isEqualTo(completed.getFailure()).isEqualTo(VerificationResult.Failure.CAVEAT_NOT_SATISFIED);
+  }
+
+  @Test
+  public void fail_fast_rejects_unsatisfied_caveat_of_discharge_macaroon() {
+    String caveat_key = "4; guaranteed random by a fair toss of the dice";
+    String caveat_identifier = "this was how we remind auth of key/pred";
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("http://auth.mybank/", caveat_key, caveat_identifier)
+        .build();
+    Macaroon d = Macaroon.builder("http://auth.mybank/", caveat_key, caveat_identifier)
+        .addCaveat("role = admin")
+        .build();
+    Macaroon dp = Macaroon.builder(m)
+        .prepareForRequest(d)
+        .build();
+    VerificationPolicy failFast = VerificationPolicy.builder().satisfyExact("account = 3735928559").failFast(true).build();
+
+    VerificationResult result = failFast.verify(m, secret, dp);
+
+    assertThat(result.getFailure()).isEqualTo(VerificationResult.Failure.DISCHARGE_INVALID);
+    assertThat(result.getCaveatIndex()).isEqualTo(0);
+    assertThat(failFast.verify(m, "wrong secret", dp).isValid()).isFalse();
+  }
+
+  @Test
+  public void policy_is_shared_between_threads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Callable<Boolean>> tasks = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        Macaroon m = Macaroon.builder(location, secret, identifier + i)
+            .addCaveat("account = 3735928559")
+            .addCaveat("time < " + Instant.now().plus(Duration.ofDays(i + 1)))
+            .build();
+        tasks.add(() -> policy.isValid(m, secret));
+      }
+      for (Future<Boolean> result : executor.invokeAll(tasks)) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void verifyAll_returns_result_per_macaroon_in_order() {
+    List<Macaroon> macaroons = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      macaroons.add(Macaroon.builder(location, secret, identifier + i)
+          .addCaveat(i % 3 == 0 ? "account = 0" : "account = 3735928559")
+          .build());
+    }
+
+    List<VerificationResult> results = policy.verifyAll(macaroons, m -> string_to_bytes(secret));
+
+    assertThat(results).hasSize(100);
+    for (int i = 0; i < results.size(); i++) {
+      assertThat(results.get(i).isValid()).describedAs("macaroon #" + i).isEqualTo(i % 3 != 0);
+      assertThat(results.get(i).getCaveatIndex()).describedAs("macaroon #" + i).isEqualTo(i % 3 == 0 ? 0 : -1);
+    }
+  }
+
+  @Test
+  public void verifyAll_resolves_secret_per_macaroon() {
+    String otherSecret = "this is another super secret key";
+    Macaroon m1 = Macaroon.builder(location, secret, "key-1").build();
+    Macaroon m2 = Macaroon.builder(location, otherSecret, "key-2").build();
+    Macaroon m3 = Macaroon.builder(location, otherSecret, "unknown").build();
+
+    List<VerificationResult> results = policy.verifyAll(Arrays.asList(m1, m2, m3), m -> {
+      switch (m.identifier) {
+        case "key-1":
+          return string_to_bytes(secret);
+        case "key-2":
+          return string_to_bytes(otherSecret);
+        default:
+          return null;
+      }
+    });
+
+    assertThat(results.get(0).isValid()).isTrue();
+    assertThat(results.get(1).isValid()).isTrue();
+    assertThat(results.get(2).getFailure()).isEqualTo(VerificationResult.Failure.SECRET_UNKNOWN);
+    assertThat(results.get(2).getMacaroon()).isSameAs(m3);
+  }
+
+  @Test
+  public void verifyAll_with_discharge_macaroons_and_executor() {
+    String caveat_key = "4; guaranteed random by a fair toss of the dice";
+    String caveat_identifier = "this was how we remind auth of key/pred";
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("http://auth.mybank/", caveat_key, caveat_identifier)
+        .build();
+    Macaroon d = Macaroon.builder("http://auth.mybank/", caveat_key, caveat_identifier).build();
+    Macaroon dp = Macaroon.builder(m)
+        .prepareForRequest(d)
+        .build();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<VerificationResult> results = policy.verifyAll(
+          Arrays.asList(m, m, m),
+          Arrays.asList(Collections.singletonList(dp), null, Collections.singletonList(d)),
+          macaroon -> string_to_bytes(secret),
+          executor);
+
+      assertThat(results.get(0).isValid()).isTrue();
+      assertThat(results.get(1).getFailure()).isEqualTo(VerificationResult.Failure.DISCHARGE_MISSING);
+      assertThat(results.get(2).getFailure()).isEqualTo(VerificationResult.Failure.DISCHARGE_INVALID);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void verifyAll_fails_only_the_macaroon_with_duplicate_discharges() {
+    String caveat_key = "4; guaranteed random by a fair toss of the dice";
+    String caveat_identifier = "this was how we remind auth of key/pred";
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("http://auth.mybank/", caveat_key, caveat_identifier)
+        .build();
+    Macaroon dp = Macaroon.builder(m)
+        .prepareForRequest(Macaroon.builder("http://auth.mybank/", caveat_key, caveat_identifier).build())
+        .build();
+    Macaroon forged = Macaroon.builder(m)
+        .prepareForRequest(Macaroon.builder("http://auth.mybank/", "another key", caveat_identifier).build())
+        .build();
+
+    List<VerificationResult> results = policy.verifyAll(
+        Arrays.asList(m, m, m),
+        Arrays.asList(Collections.singletonList(dp), Arrays.asList(dp, forged), Collections.singletonList(dp)),
+        macaroon -> string_to_bytes(secret),
+        Runnable::run);
+
+    assertThat(results.get(0).isValid()).isTrue();
+    assertThat(results.get(1).getFailure()).isEqualTo(VerificationResult.Failure.DISCHARGE_DUPLICATE);
+    assertThat(results.get(1).getMacaroon()).isSameAs(forged);
+    assertThat(results.get(1).getCaveatIndex()).isEqualTo(-1);
+    assertThat(results.get(2).isValid()).isTrue();
+  }
+
+  @Test
+  public void duplicate_discharges_are_not_valid() {
+    String caveat_key = "4; guaranteed random by a fair toss of the dice";
+    String caveat_identifier = "this was how we remind auth of key/pred";
+    Macaroon m = Macaroon.builder(location, secret, identifier)
+        .addCaveat("http://auth.mybank/", caveat_key, caveat_identifier)
+        .build();
+    Macaroon dp = Macaroon.builder(m)
+        .prepareForRequest(Macaroon.builder("http://auth.mybank/", caveat_key, caveat_identifier).build())
+        .build();
+    Macaroon forged = Macaroon.builder("http://auth.mybank/", "another key", caveat_identifier).build();
+
+    assertThat(policy.isValid(m, secret, dp)).isTrue();
+    assertThat(policy.isValid(m, secret, forged, dp)).isFalse();
+    assertThat(policy.isValid(m, secret, dp, forged)).isFalse();
+  }
+
+  @Test
+  public void verifyAll_of_empty_list() {
+    assertThat(policy.verifyAll(Collections.<Macaroon>emptyList(), m -> string_to_bytes(secret))).isEmpty();
+  }
+
+  @Test
+  public void verifyAll_awaits_all_chunks_when_the_calling_thread_fails() throws Exception {
+    List<Macaroon> macaroons = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      macaroons.add(Macaroon.builder(location, secret, identifier + i).build());
+    }
+    AtomicInteger resolved = new AtomicInteger();
+    SecretResolver secretResolver = m -> {
+      if (m == macaroons.get(0)) {
+        throw new IllegalStateException("secret store unavailable");
+      }
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      resolved.incrementAndGet();
+      return string_to_bytes(secret);
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      try {
+        policy.verifyAll(macaroons, null, secretResolver, executor);
+        fail("expected IllegalStateException");
+      } catch (IllegalStateException expected) {
+        // expected
+      }
+      int resolvedWhenFailed = resolved.get();
+
+      Thread.sleep(50);
+
+      assertThat(resolved.get()).isEqualTo(resolvedWhenFailed);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void verifyAll_requires_discharge_macaroons_per_macaroon() {
+    Macaroon m = Macaroon.builder(location, secret, identifier).build();
+
+    policy.verifyAll(Arrays.asList(m, m), Collections.<List<Macaroon>>emptyList(), macaroon -> string_to_bytes(secret), Runnable::run);
+  }
+
+  private static class CountingCaveatVerifier implements GeneralCaveatVerifier {
+    private int calls;
+
+    @Override
+    public boolean verifyCaveat(String caveat) {
+      calls++;
+      return caveat.startsWith("time < ");
+    }
+  }
+}
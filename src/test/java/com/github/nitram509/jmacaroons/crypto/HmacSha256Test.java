@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.nitram509.jmacaroons.crypto;
+
+import org.testng.annotations.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.github.nitram509.jmacaroons.util.BinHex.bin2hex;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HmacSha256Test {
+
+  @Test
+  public void rfc4231_test_case_1() {
+    byte[] key = new byte[20];
+    Arrays.fill(key, (byte) 0x0b);
+
+    assertThat(hmac(key, "Hi There")).isEqualTo("b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7");
+  }
+
+  @Test
+  public void rfc4231_test_case_2() {
+    byte[] key = "Jefe".getBytes(StandardCharsets.US_ASCII);
+
+    assertThat(hmac(key, "what do ya want for nothing?")).isEqualTo("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843");
+  }
+
+  @Test
+  public void rfc4231_test_case_6__key_larger_than_block_size() {
+    byte[] key = new byte[131];
+    Arrays.fill(key, (byte) 0xaa);
+
+    assertThat(hmac(key, "Test Using Larger Than Block-Size Key - Hash Key First")).isEqualTo("60e431591ee0b67f0d8a26aacbf5b77f8e0bc6213728c5140546040f0ee37f54");
+  }
+
+  @Test
+  public void same_results_as_jca_for_all_key_and_message_sizes() throws Exception {
+    Random random = new Random(42);
+    HmacSha256 hmac = new HmacSha256();
+    Mac jca = Mac.getInstance("HmacSHA256");
+    for (int keyLength = 1; keyLength <= 140; keyLength += 3) {
+      byte[] key = new byte[keyLength];
+      random.nextBytes(key);
+      hmac.init(key);
+      jca.init(new SecretKeySpec(key, "HmacSHA256"));
+      for (int messageLength = 0; messageLength <= 200; messageLength += 7) {
+        byte[] message = new byte[messageLength];
+        random.nextBytes(message);
+        int split = messageLength / 3;
+        hmac.update(message, 0, split);
+        hmac.update(message, split, messageLength - split);
+        byte[] out = new byte[HmacSha256.HASH_BYTES];
+        hmac.doFinal(out, 0);
+
+        assertThat(out).isEqualTo(jca.doFinal(message));
+      }
+    }
+  }
+
+  @Test
+  public void reset_drops_processed_message() {
+    HmacSha256 hmac = new HmacSha256();
+    hmac.init("Jefe".getBytes(StandardCharsets.US_ASCII));
+    hmac.update(new byte[100]);
+    hmac.reset();
+
+    byte[] out = hmac.doFinal("what do ya want for nothing?".getBytes(StandardCharsets.US_ASCII));
+    assertThat(bin2hex(out)).isEqualTo("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843");
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void uninitialized_instance_fails() {
+    new HmacSha256().doFinal(new byte[0]);
+  }
+
+  private static String hmac(byte[] key, String message) {
+    HmacSha256 hmac = new HmacSha256();
+    hmac.init(key);
+    return bin2hex(hmac.doFinal(message.getBytes(StandardCharsets.US_ASCII)));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl.Salsa20Test.CIPHERTEXT;
+import static com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl.Salsa20Test.bytes;
+import static com.github.nitram509.jmacaroons.util.BinHex.hex2bin;
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test vectors of NaCl's tests/onetimeauth.c and RFC 7539 (section 2.5.2 and appendix A.3).
+ */
+public class Poly1305Test {
+
+  @DataProvider
+  public static Object[][] vectors() {
+    return new Object[][]{
+        // NaCl, the tag and ciphertext of the secretbox vector
+        {bytes(
+            0xee, 0xa6, 0xa7, 0x25, 0x1c, 0x1e, 0x72, 0x91, 0x6d, 0x11, 0xc2, 0xcb, 0x21, 0x4d, 0x3c, 0x25,
+            0x25, 0x39, 0x12, 0x1d, 0x8e, 0x23, 0x4e, 0x65, 0x2d, 0x65, 0x1f, 0xa4, 0xc8, 0xcf, 0xf8, 0x80),
+            Arrays.copyOfRange(CIPHERTEXT, 16, CIPHERTEXT.length),
+            Arrays.copyOf(CIPHERTEXT, 16)},
+        {hex2bin("85d6be7857556d337f4452fe42d506a80103808afb0db2fd4abff6af4149f51b"),
+            "Cryptographic Forum Research Group".getBytes(),
+            hex2bin("a8061dc1305136c6c22b8baf0c0127a9")},
+        {hex2bin("0200000000000000000000000000000000000000000000000000000000000000"),
+            hex2bin("ffffffffffffffffffffffffffffffff"),
+            hex2bin("03000000000000000000000000000000")},
+        {hex2bin("02000000000000000000000000000000ffffffffffffffffffffffffffffffff"),
+            hex2bin("02000000000000000000000000000000"),
+            hex2bin("03000000000000000000000000000000")},
+        {hex2bin("0100000000000000000000000000000000000000000000000000000000000000"),
+            hex2bin("fffffffffffffffffffffffffffffffff0ffffffffffffffffffffffffffffff11000000000000000000000000000000"),
+            hex2bin("05000000000000000000000000000000")},
+        {hex2bin("0100000000000000000000000000000000000000000000000000000000000000"),
+            hex2bin("fffffffffffffffffffffffffffffffffbfefefefefefefefefefefefefefefe01010101010101010101010101010101"),
+            hex2bin("00000000000000000000000000000000")},
+    };
+  }
+
+  @Test(dataProvider = "vectors")
+  public void onetimeauth(byte[] key, byte[] message, byte[] tag) {
+    byte[] out = new byte[20];
+
+    poly1305.crypto_onetimeauth(out, 2, message, 0, message.length, key);
+
+    assertThat(Arrays.copyOfRange(out, 2, 18)).isEqualTo(tag);
+  }
+
+  @Test(dataProvider = "vectors")
+  public void onetimeauth_verify(byte[] key, byte[] message, byte[] tag) {
+    assertThat(poly1305.crypto_onetimeauth_verify(tag, 0, message, 0, message.length, key)).isEqualTo(0);
+  }
+
+  @Test(dataProvider = "vectors")
+  public void onetimeauth_verify_rejects_every_changed_byte(byte[] key, byte[] message, byte[] tag) {
+    for (int i = 0; i < 16; i++) {
+      byte[] changed = tag.clone();
+      changed[i] ^= 1;
+
+      assertThat(poly1305.crypto_onetimeauth_verify(changed, 0, message, 0, message.length, key)).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void onetimeauth_of_every_length_uses_the_given_slice() {
+    byte[] key = hex2bin("85d6be7857556d337f4452fe42d506a80103808afb0db2fd4abff6af4149f51b");
+    byte[] message = new byte[100];
+    Arrays.fill(message, (byte) 0xa5);
+    for (int length = 0; length <= 50; length++) {
+      byte[] expected = new byte[16];
+      byte[] actual = new byte[16];
+
+      poly1305.crypto_onetimeauth(expected, 0, Arrays.copyOfRange(message, 7, 7 + length), 0, length, key);
+      poly1305.crypto_onetimeauth(actual, 0, message, 7, length, key);
+
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2014 Martin W. Kirst
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nitram509.jmacaroons.crypto.neilalexander.jnacl;
+
+import org.testng.annotations.Test;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.github.nitram509.jmacaroons.util.BinHex.bin2hex;
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test vectors of NaCl's tests/core1.c, core2.c, stream.c and secretbox.c
+ */
+public class Salsa20Test {
+
+  static final byte[] SHARED = bytes(
+      0x4a, 0x5d, 0x9d, 0x5b, 0xa4, 0xce, 0x2d, 0xe1, 0x72, 0x8e, 0x3b, 0xf4, 0x80, 0x35, 0x0f, 0x25,
+      0xe0, 0x7e, 0x21, 0xc9, 0x47, 0xd1, 0x9e, 0x33, 0x76, 0xf0, 0x9b, 0x3c, 0x1e, 0x16, 0x17, 0x42);
+
+  static final byte[] FIRST_KEY = bytes(
+      0x1b, 0x27, 0x55, 0x64, 0x73, 0xe9, 0x85, 0xd4, 0x62, 0xcd, 0x51, 0x19, 0x7a, 0x9a, 0x46, 0xc7,
+      0x60, 0x09, 0x54, 0x9e, 0xac, 0x64, 0x74, 0xf2, 0x06, 0xc4, 0xee, 0x08, 0x44, 0xf6, 0x83, 0x89);
+
+  static final byte[] SECOND_KEY = bytes(
+      0xdc, 0x90, 0x8d, 0xda, 0x0b, 0x93, 0x44, 0xa9, 0x53, 0x62, 0x9b, 0x73, 0x38, 0x20, 0x77, 0x88,
+      0x80, 0xf3, 0xce, 0xb4, 0x21, 0xbb, 0x61, 0xb9, 0x1c, 0xbd, 0x4c, 0x3e, 0x66, 0x25, 0x6c, 0xe4);
+
+  static final byte[] NONCE = bytes(
+      0x69, 0x69, 0x6e, 0xe9, 0x55, 0xb6, 0x2b, 0x73, 0xcd, 0x62, 0xbd, 0xa8, 0x75, 0xfc, 0x73, 0xd6,
+      0x82, 0x19, 0xe0, 0x03, 0x6b, 0x7a, 0x0b, 0x37);
+
+  static final byte[] MESSAGE = bytes(
+      0xbe, 0x07, 0x5f, 0xc5, 0x3c, 0x81, 0xf2, 0xd5, 0xcf, 0x14, 0x13, 0x16, 0xeb, 0xeb, 0x0c, 0x7b,
+      0x52, 0x28, 0xc5, 0x2a, 0x4c, 0x62, 0xcb, 0xd4, 0x4b, 0x66, 0x84, 0x9b, 0x64, 0x24, 0x4f, 0xfc,
+      0xe5, 0xec, 0xba, 0xaf, 0x33, 0xbd, 0x75, 0x1a, 0x1a, 0xc7, 0x28, 0xd4, 0x5e, 0x6c, 0x61, 0x29,
+      0x6c, 0xdc, 0x3c, 0x01, 0x23, 0x35, 0x61, 0xf4, 0x1d, 0xb6, 0x6c, 0xce, 0x31, 0x4a, 0xdb, 0x31,
+      0x0e, 0x3b, 0xe8, 0x25, 0x0c, 0x46, 0xf0, 0x6d, 0xce, 0xea, 0x3a, 0x7f, 0xa1, 0x34, 0x80, 0x57,
+      0xe2, 0xf6, 0x55, 0x6a, 0xd6, 0xb1, 0x31, 0x8a, 0x02, 0x4a, 0x83, 0x8f, 0x21, 0xaf, 0x1f, 0xde,
+      0x04, 0x89, 0x77, 0xeb, 0x48, 0xf5, 0x9f, 0xfd, 0x49, 0x24, 0xca, 0x1c, 0x60, 0x90, 0x2e, 0x52,
+      0xf0, 0xa0, 0x89, 0xbc, 0x76, 0x89, 0x70, 0x40, 0xe0, 0x82, 0xf9, 0x37, 0x76, 0x38, 0x48, 0x64,
+      0x5e, 0x07, 0x05);
+
+  static final byte[] CIPHERTEXT = bytes(
+      0xf3, 0xff, 0xc7, 0x70, 0x3f, 0x94, 0x00, 0xe5, 0x2a, 0x7d, 0xfb, 0x4b, 0x3d, 0x33, 0x05, 0xd9,
+      0x8e, 0x99, 0x3b, 0x9f, 0x48, 0x68, 0x12, 0x73, 0xc2, 0x96, 0x50, 0xba, 0x32, 0xfc, 0x76, 0xce,
+      0x48, 0x33, 0x2e, 0xa7, 0x16, 0x4d, 0x96, 0xa4, 0x47, 0x6f, 0xb8, 0xc5, 0x31, 0xa1, 0x18, 0x6a,
+      0xc0, 0xdf, 0xc1, 0x7c, 0x98, 0xdc, 0xe8, 0x7b, 0x4d, 0xa7, 0xf0, 0x11, 0xec, 0x48, 0xc9, 0x72,
+      0x71, 0xd2, 0xc2, 0x0f, 0x9b, 0x92, 0x8f, 0xe2, 0x27, 0x0d, 0x6f, 0xb8, 0x63, 0xd5, 0x17, 0x38,
+      0xb4, 0x8e, 0xee, 0xe3, 0x14, 0xa7, 0xcc, 0x8a, 0xb9, 0x32, 0x16, 0x45, 0x48, 0xe5, 0x26, 0xae,
+      0x90, 0x22, 0x43, 0x68, 0x51, 0x7a, 0xcf, 0xea, 0xbd, 0x6b, 0xb3, 0x73, 0x2b, 0xc0, 0xe9, 0xda,
+      0x99, 0x83, 0x2b, 0x61, 0xca, 0x01, 0xb6, 0xde, 0x56, 0x24, 0x4a, 0x9e, 0x88, 0xd5, 0xf9, 0xb3,
+      0x79, 0x73, 0xf6, 0x22, 0xa4, 0x3d, 0x14, 0xa6, 0x59, 0x9b, 0x1f, 0x65, 0x4c, 0xb4, 0x5a, 0x74,
+      0xe3, 0x55, 0xa5);
+
+  @Test
+  public void hsalsa20_core1() {
+    byte[] out = new byte[32];
+
+    hsalsa20.crypto_core(out, new byte[16], SHARED, xsalsa20.sigma);
+
+    assertThat(out).isEqualTo(FIRST_KEY);
+  }
+
+  @Test
+  public void hsalsa20_core2() {
+    byte[] out = new byte[32];
+
+    hsalsa20.crypto_core(out, Arrays.copyOf(NONCE, 16), FIRST_KEY, xsalsa20.sigma);
+
+    assertThat(out).isEqualTo(SECOND_KEY);
+  }
+
+  @Test
+  public void xsalsa20_stream() throws Exception {
+    byte[] out = new byte[4194304];
+
+    xsalsa20.crypto_stream(out, out.length, NONCE, FIRST_KEY);
+
+    assertThat(sha256(out)).isEqualTo("662b9d0e3463029156069b12f918691a98f7dfb2ca0393c96bbfc6b1fbd630a2");
+  }
+
+  /**
+   * XSalsa20 with the first key is Salsa20 with the second key, thus the stream is the same.
+   */
+  @Test
+  public void salsa20_stream() throws Exception {
+    byte[] out = new byte[4194304];
+
+    salsa20.crypto_stream(out, out.length, NONCE, 16, SECOND_KEY);
+
+    assertThat(sha256(out)).isEqualTo("662b9d0e3463029156069b12f918691a98f7dfb2ca0393c96bbfc6b1fbd630a2");
+  }
+
+  @Test
+  public void secretbox() {
+    byte[] m = new byte[32 + MESSAGE.length];
+    System.arraycopy(MESSAGE, 0, m, 32, MESSAGE.length);
+    byte[] c = new byte[m.length];
+
+    assertThat(xsalsa20poly1305.crypto_secretbox(c, m, m.length, NONCE, FIRST_KEY)).isEqualTo(0);
+
+    assertThat(Arrays.copyOf(c, 16)).isEqualTo(new byte[16]);
+    assertThat(Arrays.copyOfRange(c, 16, c.length)).isEqualTo(CIPHERTEXT);
+  }
+
+  @Test
+  public void secretbox_open() {
+    byte[] c = new byte[16 + CIPHERTEXT.length];
+    System.arraycopy(CIPHERTEXT, 0, c, 16, CIPHERTEXT.length);
+    byte[] m = new byte[c.length];
+
+    assertThat(xsalsa20poly1305.crypto_secretbox_open(m, c, c.length, NONCE, FIRST_KEY)).isEqualTo(0);
+
+    assertThat(Arrays.copyOfRange(m, 32, m.length)).isEqualTo(MESSAGE);
+  }
+
+  @Test
+  public void secretbox_easy_writes_tag_and_ciphertext_at_offset() {
+    byte[] m = new byte[3 + MESSAGE.length];
+    System.arraycopy(MESSAGE, 0, m, 3, MESSAGE.length);
+    byte[] n = new byte[5 + NONCE.length];
+    System.arraycopy(NONCE, 0, n, 5, NONCE.length);
+    byte[] c = new byte[7 + CIPHERTEXT.length + 1];
+
+    assertThat(xsalsa20poly1305.crypto_secretbox_easy(c, 7, m, 3, MESSAGE.length, n, 5, FIRST_KEY)).isEqualTo(0);
+
+    assertThat(Arrays.copyOf(c, 7)).isEqualTo(new byte[7]);
+    assertThat(Arrays.copyOfRange(c, 7, 7 + CIPHERTEXT.length)).isEqualTo(CIPHERTEXT);
+    assertThat(c[c.length - 1]).isEqualTo((byte) 0);
+  }
+
+  @Test
+  public void secretbox_open_easy_reads_tag_and_ciphertext_at_offset() {
+    byte[] c = new byte[9 + CIPHERTEXT.length];
+    System.arraycopy(CIPHERTEXT, 0, c, 9, CIPHERTEXT.length);
+    byte[] m = new byte[2 + MESSAGE.length];
+
+    assertThat(xsalsa20poly1305.crypto_secretbox_open_easy(m, 2, c, 9, CIPHERTEXT.length, NONCE, 0, FIRST_KEY)).isEqualTo(0);
+
+    assertThat(Arrays.copyOfRange(m, 2, m.length)).isEqualTo(MESSAGE);
+  }
+
+  @Test
+  public void secretbox_open_easy_rejects_tampered_or_short_ciphertext_without_writing() {
+    byte[] c = CIPHERTEXT.clone();
+    c[c.length - 1] ^= 1;
+    byte[] m = new byte[MESSAGE.length];
+
+    assertThat(xsalsa20poly1305.crypto_secretbox_open_easy(m, 0, c, 0, c.length, NONCE, 0, FIRST_KEY)).isEqualTo(-1);
+    assertThat(xsalsa20poly1305.crypto_secretbox_open_easy(m, 0, CIPHERTEXT, 0, 15, NONCE, 0, FIRST_KEY)).isEqualTo(-1);
+    assertThat(m).isEqualTo(new byte[MESSAGE.length]);
+  }
+
+  @Test
+  public void secretbox_easy_round_trips_any_length_in_place() {
+    Random random = new Random(42);
+    for (int length : new int[]{0, 1, 31, 32, 33, 63, 64, 65, 200}) {
+      byte[] m = new byte[length];
+      random.nextBytes(m);
+      // nonce || box in one buffer, as in the vid of a third party caveat
+      byte[] box = new byte[24 + 16 + length];
+      System.arraycopy(NONCE, 0, box, 0, 24);
+
+      xsalsa20poly1305.crypto_secretbox_easy(box, 24, m, 0, length, box, 0, SECOND_KEY);
+      byte[] padded = new byte[32 + length];
+      System.arraycopy(m, 0, padded, 32, length);
+      byte[] expected = new byte[padded.length];
+      xsalsa20poly1305.crypto_secretbox(expected, padded, padded.length, NONCE, SECOND_KEY);
+      assertThat(Arrays.copyOfRange(box, 24, box.length)).isEqualTo(Arrays.copyOfRange(expected, 16, expected.length));
+
+      byte[] opened = new byte[length];
+      assertThat(xsalsa20poly1305.crypto_secretbox_open_easy(opened, 0, box, 24, 16 + length, box, 0, SECOND_KEY)).isEqualTo(0);
+      assertThat(opened).isEqualTo(m);
+    }
+  }
+
+  @Test
+  public void secretbox_easy_round_trips_in_overlapping_buffer_at_any_offset() {
+    Random random = new Random(42);
+    for (int length : new int[]{0, 1, 31, 32, 33, 63, 64, 65, 200}) {
+      byte[] m = new byte[length];
+      random.nextBytes(m);
+      byte[] expected = new byte[16 + length];
+      xsalsa20poly1305.crypto_secretbox_easy(expected, 0, m, 0, length, NONCE, 0, SECOND_KEY);
+      // the box starts before, exactly in place of (tag in front of the plaintext), at or behind the plaintext
+      for (int coffset : new int[]{0, 24, 40 - 16, 37, 40, 45}) {
+        byte[] buffer = new byte[64 + 16 + length];
+        System.arraycopy(m, 0, buffer, 40, length);
+
+        xsalsa20poly1305.crypto_secretbox_easy(buffer, coffset, buffer, 40, length, NONCE, 0, SECOND_KEY);
+        assertThat(Arrays.copyOfRange(buffer, coffset, coffset + 16 + length)).describedAs("coffset " + coffset).isEqualTo(expected);
+
+        int moffset = coffset + 16 + (coffset % 7) - 3;
+        assertThat(xsalsa20poly1305.crypto_secretbox_open_easy(buffer, moffset, buffer, coffset, 16 + length, NONCE, 0, SECOND_KEY)).isEqualTo(0);
+        assertThat(Arrays.copyOfRange(buffer, moffset, moffset + length)).describedAs("coffset " + coffset).isEqualTo(m);
+      }
+    }
+  }
+
+  @Test
+  public void stream_xor_of_any_length_equals_xor_with_stream() {
+    Random random = new Random(42);
+    for (int length : new int[]{0, 1, 31, 63, 64, 65, 127, 128, 200}) {
+      byte[] m = new byte[length];
+      random.nextBytes(m);
+      byte[] stream = new byte[length];
+      byte[] c = new byte[length];
+
+      xsalsa20.crypto_stream(stream, length, NONCE, FIRST_KEY);
+      xsalsa20.crypto_stream_xor(c, m, length, NONCE, FIRST_KEY);
+
+      for (int i = 0; i < length; i++) {
+        assertThat(c[i]).isEqualTo((byte) (m[i] ^ stream[i]));
+      }
+    }
+  }
+
+  static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  private static String sha256(byte[] data) throws Exception {
+    return bin2hex(MessageDigest.getInstance("SHA-256").digest(data));
+  }
+}
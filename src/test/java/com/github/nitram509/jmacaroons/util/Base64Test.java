@@ -3,6 +3,11 @@ package com.github.nitram509.jmacaroons.util;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class Base64Test {
@@ -52,4 +57,27 @@ public class Base64Test {
     String actual = Base64.encodeUrlSafeToString(new byte[]{b});
     assertThat(actual).isEqualTo(expectedString);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void encoder_writes_to_appendable_and_stream_like_to_string() throws Exception {
+    Random random = new Random(42);
+    for (int length = 0; length < 3000; length += 7) {
+      byte[] bytes = new byte[length];
+      random.nextBytes(bytes);
+      StringBuilder sb = new StringBuilder();
+      StringWriter writer = new StringWriter();
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+      Base64.encodeUrlSafe(bytes, sb);
+      Base64.encodeUrlSafe(bytes, writer);
+      Base64.encodeUrlSafe(bytes, stream);
+
+      String expected = Base64.encodeUrlSafeToString(bytes);
+      assertThat(sb.toString()).isEqualTo(expected);
+      assertThat(writer.toString()).isEqualTo(expected);
+      assertThat(new String(stream.toByteArray(), StandardCharsets.US_ASCII)).isEqualTo(expected);
+      assertThat(Base64.encodedLength(length, false)).isEqualTo(expected.length());
+      assertThat(Base64.encodedLength(length, true)).isEqualTo(new String(Base64.encodeUrlSafe(bytes)).length());
+    }
+  }
+}